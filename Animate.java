@@ -0,0 +1,145 @@
+// plays back a search a number of steps per second instead of one cell per tick: first the
+// cells it explored, then the path it found, painting every step that is due each frame
+// unless that would take longer than the frame's budget, in which case it catches up later
+class TraceAnimation {
+  // the most time painting may take out of one frame, well under the 10 ms tick
+  static final long FRAME_BUDGET_NANOS = 4_000_000L;
+  // painted steps between checks of the clock against the budget
+  static final int STEPS_PER_CLOCK_CHECK = 256;
+  // a trace plays back in about this long at the normal speed, or slower for short ones
+  static final int NORMAL_SECONDS = 10;
+  static final int MIN_STEPS_PER_SECOND = 100;
+  // how far speed can be doubled or halved from normal
+  static final int MAX_SPEED = 10;
+  static final int MIN_SPEED = -6;
+
+  private CellTrace seen;
+  private CellTrace path;
+  // reads on from the last step painted, so playing in order decodes each step once
+  private TraceCursor cursor;
+  // the steps painted so far, seen cells first, then path cells
+  private int position;
+  // speed doubles the normal steps per second for every step up, halves it for every step down
+  private int speed;
+  // where and when playback last started or changed speed, the clock is read on the first frame
+  private int basePosition;
+  private long baseTime;
+  private boolean clockStarted;
+
+  TraceAnimation() {
+    this.seen = new CellTrace(1);
+    this.path = new CellTrace(1);
+  }
+
+  //EFFECT: starts playing back the given explored cells and path from the beginning
+  void start(CellTrace seen, CellTrace path) {
+    this.seen = seen;
+    this.path = path;
+    this.cursor = null;
+    this.position = 0;
+    this.restartClock();
+  }
+
+  // the number of steps in the whole trace
+  int length() {
+    return this.seen.size() + this.path.size();
+  }
+
+  int position() {
+    return this.position;
+  }
+
+  boolean isDone() {
+    return this.position >= this.length();
+  }
+
+  // the steps played back per second at the current speed
+  long stepsPerSecond() {
+    long normal = Math.max(MIN_STEPS_PER_SECOND, this.length() / NORMAL_SECONDS);
+    if (this.speed >= 0) {
+      return normal << this.speed;
+    }
+    else {
+      return Math.max(1, normal >> -this.speed);
+    }
+  }
+
+  //EFFECT: plays back faster or slower by the given number of doublings, keeping the place
+  void changeSpeed(int doublings) {
+    this.speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, this.speed + doublings));
+    this.restartClock();
+  }
+
+  //EFFECT: counts time from the next frame on, from the current position
+  void restartClock() {
+    this.basePosition = this.position;
+    this.clockStarted = false;
+  }
+
+  // returns the number of steps painted
+  //EFFECT: paints the steps due by the given time onto the given grid, stopping early once
+  // painting has used up the frame's budget
+  int advance(Grid grid, long now) {
+    if (!this.clockStarted) {
+      this.baseTime = now;
+      this.clockStarted = true;
+    }
+    long due = this.basePosition
+        + (long) ((now - this.baseTime) * (double) this.stepsPerSecond() / 1_000_000_000L);
+    // always at least one step, so playback moves on even when frames come fast
+    int target = (int) Math.min(this.length(), Math.max(due, this.position + 1L));
+    int painted = 0;
+    long frameStart = System.nanoTime();
+    while (this.position < target) {
+      this.paintStep(grid, this.position);
+      this.position += 1;
+      painted += 1;
+      if (painted % STEPS_PER_CLOCK_CHECK == 0
+          && System.nanoTime() - frameStart > FRAME_BUDGET_NANOS) {
+        target = this.position;
+      }
+    }
+    return painted;
+  }
+
+  //EFFECT: paints the given step of the trace onto the given grid
+  void paintStep(Grid grid, int step) {
+    if (step < this.seen.size()) {
+      grid.paint(this.cellAt(this.seen, step), Grid.SEEN);
+    }
+    else {
+      grid.paint(this.cellAt(this.path, step - this.seen.size()), Grid.PATH);
+    }
+  }
+
+  // the cell of the given step of the given trace, read on from the last step read when it
+  // is the one after, otherwise from the keyframe before it
+  int cellAt(CellTrace trace, int step) {
+    if (this.cursor == null || this.cursor.trace != trace || this.cursor.step() != step) {
+      this.cursor = trace.cursor(step);
+    }
+    return this.cursor.next();
+  }
+
+  //EFFECT: moves playback back to the first step, the grid's colors must be cleared too
+  void rewind() {
+    this.position = 0;
+    this.restartClock();
+  }
+
+  //EFFECT: moves playback forward to the given step, painting the steps on the way onto the
+  // given grid; going back to an earlier step is a rewind first
+  void seek(Grid grid, int step) {
+    int target = Math.max(0, Math.min(this.length(), step));
+    while (this.position < target) {
+      this.paintStep(grid, this.position);
+      this.position += 1;
+    }
+    this.restartClock();
+  }
+
+  //EFFECT: paints every step left onto the given grid
+  void skipToEnd(Grid grid) {
+    this.seek(grid, this.length());
+  }
+}
@@ -0,0 +1,390 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// generates, solves and saves mazes from the command line without a window, many at once:
+//   java MazeBatch --size 100x100 --count 1000 --seed 7 --bias vertical --algorithm eller
+//       --search astar --out mazes --png 4 --threads 8 --storage mapped
+// every option has a default, see USAGE
+class MazeBatch {
+  static final String USAGE = "usage: MazeBatch [--size WIDTHxHEIGHT] [--count N] [--seed S]\n"
+      + "    [--bias standard|vertical|horizontal] [--algorithm kruskal|eller|boruvka]\n"
+      + "    [--search bfs|dfs|astar|dijkstra|bidirectional|fill] [--out DIR [--png CELL_PIXELS]]\n"
+      + "    [--threads N, 0 for a virtual thread per maze where the JVM has them]\n"
+      + "    [--storage heap|mapped|auto, mapped keeps mazes off the heap in temporary files]";
+
+  // bytes each cell of a maze of the batch takes at once, over its grid, the edges and sets of
+  // its generator, its search and its stats, with room to spare
+  static final long BYTES_PER_CELL = 64;
+
+  int width = 100;
+  int height = 100;
+  int count = 100;
+  long seed = new SplittableRandom().nextLong();
+  boolean horizPref;
+  boolean vertPref;
+  boolean rowByRow;
+  boolean parallel;
+  ISearch search = new BreadthFirstSearch();
+  // where each maze is saved, as a maze file and a PNG when pngCell is above 0, nowhere if null
+  Path out;
+  int pngCell;
+  int threads;
+  // where each maze is kept while it is made, null to pick one by its size
+  IStorage storage;
+
+  // must be public, the entry point from the command line
+  public static void main(String[] args) {
+    MazeBatch batch;
+    try {
+      batch = MazeBatch.parse(args);
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    ExecutorService pool = batch.executor();
+    try {
+      System.out.println(batch.run(pool, System.err));
+    }
+    catch (IOException e) {
+      System.err.println("Could not save the mazes: " + e.getMessage());
+      System.exit(1);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // the batch the given command line asks for
+  static MazeBatch parse(String[] args) {
+    MazeBatch batch = new MazeBatch();
+    for (int i = 0; i < args.length; i += 2) {
+      String option = args[i];
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing a value after " + option);
+      }
+      String value = args[i + 1];
+      if (option.equals("--size")) {
+        int[] size = MazeOptions.size(option, value);
+        batch.width = size[0];
+        batch.height = size[1];
+      }
+      else if (option.equals("--count")) {
+        batch.count = MazeOptions.positive(option, value);
+      }
+      else if (option.equals("--seed")) {
+        batch.seed = MazeOptions.seed(value);
+      }
+      else if (option.equals("--bias")) {
+        batch.horizPref = value.equals("horizontal");
+        batch.vertPref = value.equals("vertical");
+        if (!batch.horizPref && !batch.vertPref && !value.equals("standard")) {
+          throw new IllegalArgumentException("Unknown bias " + value);
+        }
+      }
+      else if (option.equals("--algorithm")) {
+        batch.rowByRow = value.equals("eller");
+        batch.parallel = value.equals("boruvka");
+        if (!batch.rowByRow && !batch.parallel && !value.equals("kruskal")) {
+          throw new IllegalArgumentException("Unknown algorithm " + value);
+        }
+      }
+      else if (option.equals("--search")) {
+        batch.search = MazeBatch.search(value);
+      }
+      else if (option.equals("--out")) {
+        batch.out = Paths.get(value);
+      }
+      else if (option.equals("--png")) {
+        batch.pngCell = MazeOptions.positive(option, value);
+      }
+      else if (option.equals("--threads")) {
+        // 0, the default, is a virtual thread a maze
+        batch.threads = MazeOptions.atLeast(option, value, 0);
+      }
+      else if (option.equals("--storage")) {
+        batch.storage = MazeBatch.storage(value);
+      }
+      else {
+        throw new IllegalArgumentException("Unknown option " + option);
+      }
+    }
+    if (batch.pngCell > 0 && batch.out == null) {
+      throw new IllegalArgumentException("--png needs --out to know where to write");
+    }
+    // refused now rather than running out of heap partway through the first maze
+    if (batch.parallel && (long) batch.width * batch.height
+        * ParallelSpanningTree.HEAP_BYTES_PER_CELL > Runtime.getRuntime().maxMemory()) {
+      throw new IllegalArgumentException("Boruvka's algorithm keeps "
+          + ParallelSpanningTree.HEAP_BYTES_PER_CELL + " bytes a cell on the heap, more than it "
+          + "has for a " + batch.width + "x" + batch.height + " maze, use kruskal or eller");
+    }
+    return batch;
+  }
+
+  // the search of the given name
+  static ISearch search(String name) {
+    if (name.equals("bfs")) {
+      return new BreadthFirstSearch();
+    }
+    else if (name.equals("dfs")) {
+      return new DepthFirstSearch();
+    }
+    else if (name.equals("astar")) {
+      return new AStarSearch();
+    }
+    else if (name.equals("dijkstra")) {
+      return new DijkstraSearch();
+    }
+    else if (name.equals("bidirectional")) {
+      return new BidirectionalSearch();
+    }
+    else if (name.equals("fill")) {
+      // the batch never animates, so it keeps no fill order
+      return new DeadEndFillSearch(false);
+    }
+    else {
+      throw new IllegalArgumentException("Unknown search " + name);
+    }
+  }
+
+  // the storage of the given name, null for auto
+  static IStorage storage(String name) {
+    if (name.equals("heap")) {
+      return new HeapStorage();
+    }
+    else if (name.equals("mapped")) {
+      return new MappedStorage(Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+    else if (name.equals("auto")) {
+      return null;
+    }
+    else {
+      throw new IllegalArgumentException("Unknown storage " + name);
+    }
+  }
+
+  // the storage the mazes are kept in when the given number of them are held at once: the one
+  // asked for, otherwise the heap while they all fit in half of it, and mapped files beyond
+  IStorage storage(int held) {
+    if (this.storage != null) {
+      return this.storage;
+    }
+    long bytes = (long) this.width * this.height * BYTES_PER_CELL * held;
+    if (bytes <= Runtime.getRuntime().maxMemory() / 2) {
+      return new HeapStorage();
+    }
+    return MazeBatch.storage("mapped");
+  }
+
+  // the pool the mazes run on: a bounded pool of the given number of threads, or with none
+  // given a virtual thread per maze, looked up by reflection so the game still builds for JVMs
+  // without them, which get a thread per core instead
+  ExecutorService executor() {
+    if (this.threads > 0) {
+      return Executors.newFixedThreadPool(this.threads);
+    }
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  // returns the summary of the run
+  //EFFECT: generates, solves and saves every maze of the batch on the given pool, printing how
+  // many are done to the given stream as they finish
+  BatchReport run(ExecutorService pool, PrintStream progress) throws IOException {
+    if (this.out != null) {
+      Files.createDirectories(this.out);
+    }
+    // a virtual thread per maze would start them all at once, holding every grid in memory,
+    // so no more than a few per core run at a time whatever the pool
+    int held = 2 * Runtime.getRuntime().availableProcessors();
+    Semaphore running = new Semaphore(held);
+    IStorage storage = this.storage(Math.min(held, this.count));
+    SplittableRandom seeds = new SplittableRandom(this.seed);
+    long begin = System.nanoTime();
+    List<Future<BatchTiming>> futures = new ArrayList<Future<BatchTiming>>();
+    for (int i = 0; i < this.count; i += 1) {
+      futures.add(pool.submit(new BatchMaze(this, i, seeds.nextLong(), running, storage)));
+    }
+    long[] generateNanos = new long[this.count];
+    long[] solveNanos = new long[this.count];
+    MazeStats total = new MazeStats();
+    long solutions = 0;
+    long diameters = 0;
+    int step = Math.max(1, this.count / 100);
+    for (int i = 0; i < this.count; i += 1) {
+      BatchTiming timing;
+      try {
+        timing = futures.get(i).get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted after " + i + " mazes", e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof UncheckedIOException) {
+          throw ((UncheckedIOException) e.getCause()).getCause();
+        }
+        throw new IllegalStateException("Could not make maze " + i, e.getCause());
+      }
+      generateNanos[i] = timing.generateNanos;
+      solveNanos[i] = timing.solveNanos;
+      total.add(timing.stats);
+      solutions += timing.stats.solutionLength;
+      diameters += timing.stats.diameter;
+      if ((i + 1) % step == 0 || i + 1 == this.count) {
+        progress.print("\r" + (i + 1) + "/" + this.count + " mazes");
+      }
+    }
+    progress.println();
+    // the summed stats are given the mean solution and diameter
+    total.solutionLength = (int) (solutions / this.count);
+    total.diameter = (int) (diameters / this.count);
+    return new BatchReport(this.count, this.width, this.height, System.nanoTime() - begin,
+        generateNanos, solveNanos, total);
+  }
+}
+
+// one maze of a batch: generates it from its seed, solves it from corner to corner and saves it
+class BatchMaze implements Callable<BatchTiming> {
+  final MazeBatch batch;
+  final int number;
+  final long seed;
+  // taken while the maze is held in memory
+  final Semaphore running;
+  // where the maze and everything worked out over it are kept
+  final IStorage storage;
+
+  BatchMaze(MazeBatch batch, int number, long seed, Semaphore running, IStorage storage) {
+    this.batch = batch;
+    this.number = number;
+    this.seed = seed;
+    this.running = running;
+    this.storage = storage;
+  }
+
+  // returns how long generating and solving took, and what the maze is made of
+  //EFFECT: writes the maze to the batch's directory, if it has one
+  public BatchTiming call() throws InterruptedException {
+    this.running.acquire();
+    try {
+      int end = this.batch.width * this.batch.height - 1;
+      MazeBuilder builder = new MazeBuilder(this.batch.width, this.batch.height, this.seed,
+          this.batch.horizPref, this.batch.vertPref, this.batch.rowByRow, this.batch.parallel,
+          0, end, this.batch.search);
+      long begin = System.nanoTime();
+      // everything made for the maze is closed once it is done with, so a mapped batch gives
+      // back each maze's pages before the next one maps its own
+      try (Grid grid = new Grid(this.batch.width, this.batch.height, this.storage)) {
+        builder.generate(grid, new SplittableRandom(this.seed));
+        long generated = System.nanoTime();
+        try (SearchResult found = MazeMetrics.GLOBAL.search(this.batch.search, grid, 0, end);
+            MazeAnalyzer analyzer = new MazeAnalyzer()) {
+          long solved = System.nanoTime();
+          MazeStats stats = analyzer.analyze(grid, 0, end);
+          if (this.batch.out != null) {
+            String name = String.format("maze-%05d", this.number);
+            try {
+              new MazeFile(grid, this.seed, 0, end).save(this.batch.out.resolve(name + ".maze"));
+              if (this.batch.pngCell > 0) {
+                new MazeRasterizer(grid, this.batch.pngCell, found.path)
+                    .writePng(new File(this.batch.out.toFile(), name + ".png"));
+              }
+            }
+            catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+          return new BatchTiming(generated - begin, solved - generated, stats);
+        }
+      }
+    }
+    finally {
+      this.running.release();
+    }
+  }
+}
+
+// how long one maze of a batch took to generate and to solve, and its stats
+class BatchTiming {
+  final long generateNanos;
+  final long solveNanos;
+  final MazeStats stats;
+
+  BatchTiming(long generateNanos, long solveNanos, MazeStats stats) {
+    this.generateNanos = generateNanos;
+    this.solveNanos = solveNanos;
+    this.stats = stats;
+  }
+}
+
+// the summary of a batch: how many mazes a second it made, how long the typical and the slowest
+// mazes took to generate and solve, and what they are made of together
+class BatchReport {
+  final int count;
+  final int width;
+  final int height;
+  final long totalNanos;
+  // sorted, fastest first
+  final long[] generateNanos;
+  final long[] solveNanos;
+  // the counts of every maze added up, with the longest straight of any, and the mean solution
+  // and diameter
+  final MazeStats stats;
+
+  BatchReport(int count, int width, int height, long totalNanos, long[] generateNanos,
+      long[] solveNanos, MazeStats stats) {
+    this.count = count;
+    this.width = width;
+    this.height = height;
+    this.totalNanos = totalNanos;
+    this.generateNanos = generateNanos.clone();
+    this.solveNanos = solveNanos.clone();
+    this.stats = stats;
+    Arrays.sort(this.generateNanos);
+    Arrays.sort(this.solveNanos);
+  }
+
+  // the time no more than the given percent of the given sorted times are over (nearest rank)
+  static long percentile(long[] sorted, int percent) {
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  double mazesPerSecond() {
+    return this.count * 1e9 / this.totalNanos;
+  }
+
+  public String toString() {
+    return String.format("%d mazes of %dx%d in %.2f s, %.1f mazes/s%n"
+        + "generate p50 %.3f ms  p99 %.3f ms%n"
+        + "solve    p50 %.3f ms  p99 %.3f ms%n"
+        + "%s",
+        this.count, this.width, this.height, this.totalNanos / 1e9, this.mazesPerSecond(),
+        percentile(this.generateNanos, 50) / 1e6, percentile(this.generateNanos, 99) / 1e6,
+        percentile(this.solveNanos, 50) / 1e6, percentile(this.solveNanos, 99) / 1e6,
+        this.stats);
+  }
+}
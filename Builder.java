@@ -0,0 +1,180 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+
+// a maze built off the world's thread, ready to swap in: nothing changes its grid once built
+class MazeSnapshot {
+  final Grid grid;
+  final long seed;
+  // the search of the new maze from start to end, to animate once it is swapped in
+  final SearchResult found;
+  // the maze's tree from the exit, for paths between any two cells and the way out of each
+  final TreeIndex index;
+
+  MazeSnapshot(Grid grid, long seed, SearchResult found, TreeIndex index) {
+    this.grid = grid;
+    this.seed = seed;
+    this.found = found;
+    this.index = index;
+  }
+}
+
+// generates and solves a maze from a seed and the settings of the maze it is for, keeping
+// count of how far along it is so the world can show it while the build runs elsewhere
+class MazeBuilder implements Callable<MazeSnapshot> {
+  final int width;
+  final int height;
+  final long seed;
+  final boolean horizPref;
+  final boolean vertPref;
+  final boolean rowByRow;
+  final boolean parallel;
+  final int start;
+  final int end;
+  final ISearch search;
+  // percent done, written by the building thread and read by the world's
+  private volatile int progress;
+
+  MazeBuilder(int width, int height, long seed, boolean horizPref, boolean vertPref,
+      boolean rowByRow, boolean parallel, int start, int end, ISearch search) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.horizPref = horizPref;
+    this.vertPref = vertPref;
+    this.rowByRow = rowByRow;
+    this.parallel = parallel;
+    this.start = start;
+    this.end = end;
+    this.search = search;
+  }
+
+  // returns a new grid with the maze of this seed, solved from start to end and indexed
+  public MazeSnapshot call() {
+    Grid grid = new Grid(this.width, this.height);
+    this.generate(grid, new SplittableRandom(this.seed));
+    grid.paint(this.start, Grid.PATH);
+    grid.paint(this.end, Grid.EXIT);
+    SearchResult found = MazeMetrics.GLOBAL.search(this.search, grid, this.start, this.end);
+    this.progress = 95;
+    TreeIndex index = new TreeIndex(grid, this.end);
+    this.progress = 100;
+    return new MazeSnapshot(grid, this.seed, found, index);
+  }
+
+  int progress() {
+    return this.progress;
+  }
+
+  //EFFECT: randomizes the given grid's weights from the given generator, then opens the
+  // cheapest spanning path over them, on every core when parallel, or the rows Eller's
+  // algorithm makes from the generator when row by row
+  //EFFECT: records what each phase cost with MazeMetrics
+  void generate(Grid grid, SplittableRandom rand) {
+    long begin = System.nanoTime();
+    GenerationMetrics metrics = new GenerationMetrics(this.algorithm(), grid.cells());
+    //weigh all edges right + down
+    grid.randomizeWeights(rand.split(), this.horizPref, this.vertPref);
+    metrics.weighNanos = System.nanoTime() - begin;
+    this.progress = 20;
+    if (this.rowByRow) {
+      new EllerGenerator(this.width, this.height, this.horizPref, this.vertPref)
+          .generate(rand.split(), new GridRows(grid));
+    }
+    else if (this.parallel) {
+      new ParallelSpanningTree(grid, rand.nextLong()).generate(ForkJoinPool.commonPool());
+    }
+    else {
+      this.cheapestSpanningPath(grid, rand, metrics);
+    }
+    metrics.totalNanos = System.nanoTime() - begin;
+    MazeMetrics.GLOBAL.recordGeneration(metrics);
+    this.progress = 90;
+  }
+
+  // the name of the algorithm this builder generates with, for metrics
+  String algorithm() {
+    if (this.rowByRow) {
+      return "Eller";
+    }
+    else if (this.parallel) {
+      return "Boruvka";
+    }
+    else {
+      return "Kruskal";
+    }
+  }
+
+  //EFFECT: opens the passages of the cheapest spanning tree over the given grid's edge weights,
+  // ties broken by the given generator, recording what it cost with MazeMetrics
+  void cheapestSpanningPath(Grid grid, SplittableRandom rand) {
+    long begin = System.nanoTime();
+    GenerationMetrics metrics = new GenerationMetrics("Kruskal", grid.cells());
+    this.cheapestSpanningPath(grid, rand, metrics);
+    metrics.totalNanos = System.nanoTime() - begin;
+    MazeMetrics.GLOBAL.recordGeneration(metrics);
+  }
+
+  //EFFECT: opens the passages of the cheapest spanning tree over the given grid's edge weights,
+  // ties broken by the given generator, filling in the sort and union phases of the given metrics
+  // the union find's calls are counted in locals where they are made, and copied into the
+  // metrics once it is done
+  void cheapestSpanningPath(Grid grid, SplittableRandom rand, GenerationMetrics metrics) {
+    long begin = System.nanoTime();
+    // both are only needed while the tree is built, so their stores go as soon as it is
+    try (NodeUnionFind nuf = new NodeUnionFind(grid.cells(), grid.storage());
+        IntStore workList = grid.sortedEdges(rand)) {
+      grid.closeAll();
+      long sorted = System.nanoTime();
+      int next = 0;
+      long unionCalls = 0;
+      long unions = 0;
+      // the loop's first check, each later one is counted at the end of the pass before it
+      long sizeCalls = 1;
+      // a spanning tree is done once width * height - 1 edges joined it into one set
+      while (nuf.size() > 1) {
+        int edge = workList.get(next);
+        next += 1;
+        unionCalls += 1;
+        if (nuf.union(grid.edgeTo(edge), grid.edgeFrom(edge))) {
+          unions += 1;
+          grid.open(edge);
+          // whether to update the progress, and the update's own
+          sizeCalls += 1;
+          if ((nuf.size() & 0xFFFF) == 0) {
+            sizeCalls += 1;
+            this.progress = 20 + (int) (70L * (grid.cells() - nuf.size()) / grid.cells());
+          }
+        }
+        sizeCalls += 1;
+      }
+      metrics.sortNanos = sorted - begin;
+      metrics.unionNanos = System.nanoTime() - sorted;
+      metrics.edges = workList.length();
+      metrics.unionCalls = unionCalls;
+      metrics.unions = unions;
+      metrics.sizeCalls = sizeCalls;
+    }
+  }
+}
+
+// makes the threads mazes are built on, or players are served on, daemons so they never keep
+// the game from exiting
+class BuilderThreads implements ThreadFactory {
+  final String name;
+
+  BuilderThreads() {
+    this("maze-builder");
+  }
+
+  BuilderThreads(String name) {
+    this.name = name;
+  }
+
+  public Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, this.name);
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,336 @@
+import java.awt.Color;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import javalib.impworld.*;
+import javalib.worldimages.*;
+
+// one square chunk of an endless maze: a perfect maze of its own cells, generated from the
+// seed of the chunk alone, plus the one door it has into the chunk it hangs off
+class MazeChunk {
+  final int chunkX;
+  final int chunkY;
+  final Grid grid;
+  // draws the chunk's grid, only allocating its image once the chunk is first on screen
+  final MazeRenderer renderer;
+
+  MazeChunk(int chunkX, int chunkY, Grid grid) {
+    this.chunkX = chunkX;
+    this.chunkY = chunkY;
+    this.grid = grid;
+    this.renderer = new MazeRenderer(grid);
+  }
+}
+
+// the chunks made most recently used, dropping the least recently used once there are more than
+// the capacity, which are the chunks longest off screen since every frame uses the ones on it
+class ChunkCache extends LinkedHashMap<Long, MazeChunk> {
+  final int capacity;
+
+  ChunkCache(int capacity) {
+    super(16, 0.75f, true);
+    this.capacity = capacity;
+  }
+
+  protected boolean removeEldestEntry(Map.Entry<Long, MazeChunk> eldest) {
+    return this.size() > this.capacity;
+  }
+}
+
+// an endless perfect maze over cells x, y >= 0, split into chunkSize square chunks that are
+// generated when first needed and forgotten when the cache is full, so memory stays under a
+// ceiling however far the maze goes
+// every chunk is a perfect maze of its own cells (Eller's algorithm, from a hash of the seed and
+// its place), and every chunk but the first opens one door into the chunk to its left or the one
+// above it, picked by the same hash: the chunks then form a tree (rooted at chunk 0, 0) whose
+// every edge is a single passage, so the cells do too, and any chunk's doors are known without
+// generating its neighbors
+class ChunkedMaze {
+  final long seed;
+  final int chunkSize;
+  private final ChunkCache cache;
+  // chunks generated so far, counting those generated again after being dropped
+  private long generated;
+
+  // an endless maze of the given seed, keeping as many chunks of the given size as the given
+  // number of bytes holds
+  ChunkedMaze(long seed, int chunkSize, long memoryBytes) {
+    if (chunkSize < 2) {
+      throw new IllegalArgumentException("A chunk needs at least 2 cells a side, given "
+          + chunkSize);
+    }
+    long capacity = memoryBytes / ChunkedMaze.chunkBytes(chunkSize);
+    if (capacity < 1) {
+      throw new IllegalArgumentException(memoryBytes + " bytes cannot hold a single "
+          + chunkSize + "x" + chunkSize + " chunk");
+    }
+    this.seed = seed;
+    this.chunkSize = chunkSize;
+    this.cache = new ChunkCache((int) Math.min(Integer.MAX_VALUE, capacity));
+  }
+
+  // about how many bytes one chunk of the given size takes once drawn: the grid's passage
+  // planes, open sides, colors and dirty bits, and its renderer's image, which outweighs the rest
+  static long chunkBytes(int chunkSize) {
+    long cells = (long) chunkSize * chunkSize;
+    long passages = 2L * ((chunkSize + 63) >>> 6) * chunkSize * Long.BYTES;
+    long pixels = (long) (chunkSize * MazeRenderer.CELL_SIZE - 1)
+        * (chunkSize * MazeRenderer.CELL_SIZE - 1);
+    return passages + 2 * cells + cells / 8 + pixels * Integer.BYTES;
+  }
+
+  // the most chunks kept at once
+  int capacity() {
+    return this.cache.capacity;
+  }
+
+  // the chunks kept right now
+  int cached() {
+    return this.cache.size();
+  }
+
+  long generated() {
+    return this.generated;
+  }
+
+  // whether the given chunk exists, chunks run from 0 up to Integer.MAX_VALUE both ways
+  boolean isChunk(long chunkX, long chunkY) {
+    return chunkX >= 0 && chunkY >= 0 && chunkX <= Integer.MAX_VALUE
+        && chunkY <= Integer.MAX_VALUE;
+  }
+
+  // the chunk at the given place, generating it if it is not kept
+  //EFFECT: makes the chunk the most recently used, dropping the least recently used one when
+  // the cache is full
+  MazeChunk chunk(int chunkX, int chunkY) {
+    Long key = ((long) chunkX << 32) | chunkY;
+    MazeChunk chunk = this.cache.get(key);
+    if (chunk == null) {
+      chunk = this.generate(chunkX, chunkY);
+      this.cache.put(key, chunk);
+    }
+    return chunk;
+  }
+
+  // a new chunk at the given place, the same every time for the same seed
+  MazeChunk generate(int chunkX, int chunkY) {
+    Grid grid = new Grid(this.chunkSize, this.chunkSize);
+    new EllerGenerator(this.chunkSize, this.chunkSize, false, false)
+        .generate(new SplittableRandom(this.hash(chunkX, chunkY)), new GridRows(grid));
+    this.generated += 1;
+    return new MazeChunk(chunkX, chunkY, grid);
+  }
+
+  // the chunk holding the given cell
+  MazeChunk chunkAt(long x, long y) {
+    return this.chunk((int) (x / this.chunkSize), (int) (y / this.chunkSize));
+  }
+
+  // the index of the given cell in its chunk's grid
+  int local(long x, long y) {
+    return (int) (y % this.chunkSize) * this.chunkSize + (int) (x % this.chunkSize);
+  }
+
+  //EFFECT: paints the given cell in its chunk's grid
+  void paint(long x, long y, byte color) {
+    this.chunkAt(x, y).grid.paint(this.local(x, y), color);
+  }
+
+  // a hash of the seed and the given chunk's place, seeding everything about the chunk
+  long hash(int chunkX, int chunkY) {
+    long hash = this.seed + chunkX * 0x9E3779B97F4A7C15L + chunkY * 0xC2B2AE3D27D4EB4FL;
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  // the side of the given chunk with its door into the rest of the maze, LEFT or UP, or -1 for
+  // the first chunk, which has none; chunks along an edge of the maze only have the one choice
+  int doorSide(int chunkX, int chunkY) {
+    if (chunkX == 0 && chunkY == 0) {
+      return -1;
+    }
+    else if (chunkY == 0 || (chunkX > 0 && (this.hash(chunkX, chunkY) & 1) == 0)) {
+      return Grid.LEFT;
+    }
+    else {
+      return Grid.UP;
+    }
+  }
+
+  // the given chunk's door along its side: the row of a door on the left, the column of one above
+  int door(int chunkX, int chunkY) {
+    return (int) ((this.hash(chunkX, chunkY) >>> 1) % this.chunkSize);
+  }
+
+  // whether the passage from the given cell in the given direction is open, through a door
+  // when it leads into another chunk
+  //EFFECT: may generate and cache the cell's chunk, never its neighbors
+  boolean canMove(long x, long y, int dir) {
+    if (x < 0 || y < 0 || !this.isChunk(x / this.chunkSize, y / this.chunkSize)) {
+      return false;
+    }
+    int chunkX = (int) (x / this.chunkSize);
+    int chunkY = (int) (y / this.chunkSize);
+    int localX = (int) (x % this.chunkSize);
+    int localY = (int) (y % this.chunkSize);
+    int last = this.chunkSize - 1;
+    if (dir == Grid.LEFT && localX == 0) {
+      return this.doorSide(chunkX, chunkY) == Grid.LEFT && this.door(chunkX, chunkY) == localY;
+    }
+    else if (dir == Grid.UP && localY == 0) {
+      return this.doorSide(chunkX, chunkY) == Grid.UP && this.door(chunkX, chunkY) == localX;
+    }
+    else if (dir == Grid.RIGHT && localX == last) {
+      // the door of the chunk to the right, if it opens to its left
+      return chunkX < Integer.MAX_VALUE && this.doorSide(chunkX + 1, chunkY) == Grid.LEFT
+          && this.door(chunkX + 1, chunkY) == localY;
+    }
+    else if (dir == Grid.DOWN && localY == last) {
+      return chunkY < Integer.MAX_VALUE && this.doorSide(chunkX, chunkY + 1) == Grid.UP
+          && this.door(chunkX, chunkY + 1) == localX;
+    }
+    else {
+      return this.chunk(chunkX, chunkY).grid.canMove(localY * this.chunkSize + localX, dir);
+    }
+  }
+}
+
+// plays an endless ChunkedMaze, drawing only the chunks the window around the player shows
+class ChunkedMazeWorld extends World {
+  static final int CHUNK_SIZE = 32;
+  // the most the maze keeps in memory by default, whatever its size
+  static final long MEMORY_BYTES = 64L << 20;
+
+  private final ChunkedMaze maze;
+  // cells across and down the window
+  private final int viewWidth;
+  private final int viewHeight;
+  private long playerX;
+  private long playerY;
+
+  ChunkedMazeWorld(long seed) {
+    this(new ChunkedMaze(seed, CHUNK_SIZE, MEMORY_BYTES), 48, 32);
+  }
+
+  // plays the given maze in a window of the given number of cells, which the maze's cache must
+  // hold every chunk of at once
+  ChunkedMazeWorld(ChunkedMaze maze, int viewWidth, int viewHeight) {
+    int across = (viewWidth + maze.chunkSize - 1) / maze.chunkSize + 1;
+    int down = (viewHeight + maze.chunkSize - 1) / maze.chunkSize + 1;
+    if (maze.capacity() < across * down) {
+      throw new IllegalArgumentException("A " + viewWidth + "x" + viewHeight
+          + " window shows up to " + across * down + " chunks, but only " + maze.capacity()
+          + " fit in memory");
+    }
+    this.maze = maze;
+    this.viewWidth = viewWidth;
+    this.viewHeight = viewHeight;
+    this.maze.paint(0, 0, Grid.PATH);
+  }
+
+  long getPlayerX() {
+    return this.playerX;
+  }
+
+  long getPlayerY() {
+    return this.playerY;
+  }
+
+  // the cell at the left and top of the window, which keeps the player in the middle
+  long viewLeft() {
+    return this.playerX - this.viewWidth / 2;
+  }
+
+  long viewTop() {
+    return this.playerY - this.viewHeight / 2;
+  }
+
+  // must be public, inherited from super class
+  //EFFECT: draws the chunks in the window, generating the ones not kept
+  public WorldScene makeScene() {
+    int cell = MazeRenderer.CELL_SIZE;
+    int pixelWidth = this.viewWidth * cell;
+    int pixelHeight = this.viewHeight * cell;
+    int chunkPixels = this.maze.chunkSize * cell - 1;
+    WorldScene scene = new WorldScene(pixelWidth, pixelHeight);
+    // the pixel between two chunks is wall, except at their door
+    scene.placeImageXY(new RectangleImage(pixelWidth, pixelHeight, OutlineMode.SOLID,
+        Color.black), pixelWidth / 2, pixelHeight / 2);
+    long left = this.viewLeft();
+    long top = this.viewTop();
+    for (long chunkY = Math.floorDiv(top, this.maze.chunkSize);
+        chunkY <= Math.floorDiv(top + this.viewHeight - 1, this.maze.chunkSize); chunkY += 1) {
+      for (long chunkX = Math.floorDiv(left, this.maze.chunkSize);
+          chunkX <= Math.floorDiv(left + this.viewWidth - 1, this.maze.chunkSize); chunkX += 1) {
+        if (this.maze.isChunk(chunkX, chunkY)) {
+          MazeChunk chunk = this.maze.chunk((int) chunkX, (int) chunkY);
+          int x = (int) ((chunkX * this.maze.chunkSize - left) * cell);
+          int y = (int) ((chunkY * this.maze.chunkSize - top) * cell);
+          scene.placeImageXY(chunk.renderer.render(), x + chunkPixels / 2, y + chunkPixels / 2);
+          this.placeDoor(scene, chunk, x, y);
+        }
+      }
+    }
+    scene.placeImageXY(new TextImage("(" + this.playerX + ", " + this.playerY + ") "
+        + this.maze.cached() + " chunks kept", Color.black), pixelWidth / 2, cell);
+    return scene;
+  }
+
+  //EFFECT: opens the pixels of wall between the given chunk, drawn from the given pixel, and
+  // the chunk its door leads into
+  void placeDoor(WorldScene scene, MazeChunk chunk, int x, int y) {
+    int side = this.maze.doorSide(chunk.chunkX, chunk.chunkY);
+    int door = this.maze.door(chunk.chunkX, chunk.chunkY) * MazeRenderer.CELL_SIZE;
+    int square = MazeRenderer.SQUARE_SIZE;
+    Color color = Grid.PALETTE[Grid.UNSEEN];
+    if (side == Grid.LEFT) {
+      scene.placeImageXY(new RectangleImage(1, square, OutlineMode.SOLID, color),
+          x - 1, y + door + square / 2);
+    }
+    else if (side == Grid.UP) {
+      scene.placeImageXY(new RectangleImage(square, 1, OutlineMode.SOLID, color),
+          x + door + square / 2, y - 1);
+    }
+  }
+
+  // must be public, inherited from super class
+  public void onKeyEvent(String key) {
+    int dir = -1;
+    if (key.equals("up")) {
+      dir = Grid.UP;
+    }
+    if (key.equals("left")) {
+      dir = Grid.LEFT;
+    }
+    if (key.equals("down")) {
+      dir = Grid.DOWN;
+    }
+    if (key.equals("right")) {
+      dir = Grid.RIGHT;
+    }
+    if (dir != -1 && this.maze.canMove(this.playerX, this.playerY, dir)) {
+      this.maze.paint(this.playerX, this.playerY, Grid.UNSEEN);
+      if (dir == Grid.UP) {
+        this.playerY -= 1;
+      }
+      else if (dir == Grid.LEFT) {
+        this.playerX -= 1;
+      }
+      else if (dir == Grid.DOWN) {
+        this.playerY += 1;
+      }
+      else {
+        this.playerX += 1;
+      }
+      this.maze.paint(this.playerX, this.playerY, Grid.PATH);
+    }
+  }
+
+  // specializes the big bang function to the window's size
+  void bigBang() {
+    this.bigBang(this.viewWidth * MazeRenderer.CELL_SIZE,
+        this.viewHeight * MazeRenderer.CELL_SIZE, 0.01);
+  }
+}
@@ -0,0 +1,326 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// solves a perfect maze without searching it: fills every dead end other than start and end,
+// and every cell that becomes one, until only the corridor from start to end is left
+// the cells left are one bit each, laid out like Grid's passage planes, so a long of them tells
+// which of 64 cells are dead ends in a handful of operations; bands of rows fill in parallel
+// on a ForkJoinPool, each treating the cells beyond its rows as never filled, then the rows on
+// either side of each band boundary are scanned again to finish what crosses them
+class DeadEndFillSearch implements ISearch {
+  // enough cells in a band to outweigh forking a task for it
+  static final int BAND_CELLS = 1 << 14;
+
+  private final ForkJoinPool pool;
+  // rows in each band, worked out from the width when 0
+  private final int bandRows;
+  // whether to keep the order cells were filled in, to animate, at an int a cell
+  private final boolean trace;
+
+  DeadEndFillSearch() {
+    this(ForkJoinPool.commonPool(), 0, true);
+  }
+
+  DeadEndFillSearch(boolean trace) {
+    this(ForkJoinPool.commonPool(), 0, trace);
+  }
+
+  DeadEndFillSearch(ForkJoinPool pool, int bandRows, boolean trace) {
+    this.pool = pool;
+    this.bandRows = bandRows;
+    this.trace = trace;
+  }
+
+  // the filled cells are what the result explored, in the order they were filled, or none
+  // when not tracing; nothing waits on a frontier, so its peak is 0
+  public SearchResult search(Grid grid, int start, int end) {
+    int rows = this.bandRows;
+    if (rows == 0) {
+      rows = Math.max(1, BAND_CELLS / grid.width);
+    }
+    DeadEndFiller filler = new DeadEndFiller(grid, start, end, rows, this.trace);
+    try {
+      filler.fill(this.pool);
+      if (this.trace) {
+        return new SearchResult(filler.corridor(), filler.filled, filler.filledCount, 0);
+      }
+      return new SearchResult(filler.corridor(), new int[0], 0);
+    }
+    finally {
+      filler.close();
+    }
+  }
+
+  public String name() {
+    return "Dead-end filling";
+  }
+}
+
+// the cells of one grid still left while its dead ends are filled
+class DeadEndFiller implements AutoCloseable {
+  // the one cell a cell can still move to, when it is the only one
+  static final int NO_WAY = -1;
+  static final int JUNCTION = -2;
+
+  final Grid grid;
+  final int start;
+  final int end;
+  final int bandRows;
+  final int bands;
+  // bit set while a cell is left, in the grid's storage, a bit a cell
+  private final LongStore left;
+  // the cells in the order they were filled, the first filledCount of them, null when not
+  // tracing; each band fills from its own first cell on, then they are packed together
+  IntStore filled;
+  int filledCount;
+  private final int[] bandFilled;
+
+  DeadEndFiller(Grid grid, int start, int end, int bandRows, boolean trace) {
+    this.grid = grid;
+    this.start = start;
+    this.end = end;
+    this.bandRows = bandRows;
+    this.bands = (grid.height + bandRows - 1) / bandRows;
+    this.left = grid.storage().longs(grid.passageWords());
+    if (trace) {
+      this.filled = grid.storage().ints(grid.cells());
+    }
+    this.bandFilled = new int[this.bands];
+  }
+
+  //EFFECT: fills every dead end, each band on the given pool, then across the band boundaries
+  void fill(ForkJoinPool pool) {
+    pool.invoke(new FillBands(this, 0, this.bands));
+    int count = 0;
+    for (int band = 0; band < this.bands; band += 1) {
+      int first = band * this.bandRows * this.grid.width;
+      if (this.filled != null) {
+        for (int i = 0; i < this.bandFilled[band]; i += 1) {
+          this.filled.set(count + i, this.filled.get(first + i));
+        }
+      }
+      count += this.bandFilled[band];
+    }
+    // every row of the grid is in reach now, so only a cell next to another band can be a dead
+    // end the bands did not fill
+    for (int band = 1; band < this.bands; band += 1) {
+      int row = band * this.bandRows;
+      count = this.scan(row - 1, row + 1, 0, this.grid.height, count);
+    }
+    this.filledCount = count;
+  }
+
+  //EFFECT: marks the rows of the given band left, then fills their dead ends, treating the
+  // rows of every other band as left
+  void fillBand(int band) {
+    int first = band * this.bandRows;
+    int last = Math.min(this.grid.height, first + this.bandRows);
+    long lastWord = -1L;
+    if ((this.grid.width & 63) != 0) {
+      lastWord = (1L << (this.grid.width & 63)) - 1;
+    }
+    for (int y = first; y < last; y += 1) {
+      for (int w = 0; w < this.grid.stride - 1; w += 1) {
+        this.left.set(y * this.grid.stride + w, -1L);
+      }
+      this.left.set(y * this.grid.stride + this.grid.stride - 1, lastWord);
+    }
+    this.bandFilled[band] = this.scan(first, last, first, last, first * this.grid.width)
+        - first * this.grid.width;
+  }
+
+  // returns where the next filled cell goes
+  //EFFECT: fills the dead ends of the rows from first up to but not last, and every cell that
+  // becomes one in turn, keeping to the rows from lo up to but not hi and counting the cells
+  // beyond them left, recording the cells filled from the given place on
+  int scan(int first, int last, int lo, int hi, int at) {
+    for (int y = first; y < last; y += 1) {
+      for (int w = 0; w < this.grid.stride; w += 1) {
+        long deadEnds = this.deadEnds(y, w, lo, hi);
+        while (deadEnds != 0) {
+          int cell = y * this.grid.width + (w << 6) + Long.numberOfTrailingZeros(deadEnds);
+          deadEnds &= deadEnds - 1;
+          // an earlier walk in this long may have filled it already
+          if (cell != this.start && cell != this.end && this.isLeft(cell, lo, hi)) {
+            at = this.walk(cell, lo, hi, at);
+          }
+        }
+      }
+    }
+    return at;
+  }
+
+  // the cells of the given long of the given row that are left but can move to at most one
+  // other cell left, 64 at once: a passage toward a neighbor counts while the neighbor is left
+  long deadEnds(int y, int w, int lo, int hi) {
+    Grid grid = this.grid;
+    int word = y * grid.stride + w;
+    long here = this.left.get(word);
+    long right = grid.passages(false, word);
+    long down = grid.passages(true, word);
+    // neighbors to the right and left are in this long, shifted one over, or the next one
+    long rightLeft = here >>> 1;
+    long leftOpen = right << 1;
+    long leftLeft = here << 1;
+    if (w + 1 < grid.stride) {
+      rightLeft |= this.left.get(word + 1) << 63;
+    }
+    if (w > 0) {
+      leftOpen |= grid.passages(false, word - 1) >>> 63;
+      leftLeft |= this.left.get(word - 1) >>> 63;
+    }
+    long up = 0;
+    if (y > 0) {
+      up = grid.passages(true, word - grid.stride) & this.leftWord(word - grid.stride, y - 1,
+          lo, hi);
+    }
+    down &= this.leftWord(word + grid.stride, y + 1, lo, hi);
+    right &= rightLeft;
+    long left = leftOpen & leftLeft;
+    long twoOrMore = (up & (left | down | right)) | (left & (down | right)) | (down & right);
+    return here & ~twoOrMore;
+  }
+
+  // the given long of cells left, of the given row, all of them when the row is beyond lo up to
+  // but not hi, or beyond the grid, where no passage leads anyway
+  long leftWord(int word, int y, int lo, int hi) {
+    if (y < lo || y >= hi) {
+      return -1L;
+    }
+    return this.left.get(word);
+  }
+
+  // returns true if the cell at the given column and row is left, counting the cells beyond
+  // rows lo up to hi left
+  boolean isLeft(int x, int y, int lo, int hi) {
+    if (y < lo || y >= hi) {
+      return true;
+    }
+    return (this.left.get(y * this.grid.stride + (x >>> 6)) & (1L << x)) != 0;
+  }
+
+  boolean isLeft(int cell, int lo, int hi) {
+    return this.isLeft(this.grid.x(cell), this.grid.y(cell), lo, hi);
+  }
+
+  // the one cell left the given cell can move to, NO_WAY if there is none, JUNCTION if more
+  int wayOut(int cell, int lo, int hi) {
+    int width = this.grid.width;
+    int x = cell % width;
+    int y = cell / width;
+    int sides = this.grid.openSides(cell);
+    int way = NO_WAY;
+    if ((sides & (1 << Grid.UP)) != 0 && this.isLeft(x, y - 1, lo, hi)) {
+      way = cell - width;
+    }
+    if ((sides & (1 << Grid.LEFT)) != 0 && this.isLeft(x - 1, y, lo, hi)) {
+      if (way != NO_WAY) {
+        return JUNCTION;
+      }
+      way = cell - 1;
+    }
+    if ((sides & (1 << Grid.DOWN)) != 0 && this.isLeft(x, y + 1, lo, hi)) {
+      if (way != NO_WAY) {
+        return JUNCTION;
+      }
+      way = cell + width;
+    }
+    if ((sides & (1 << Grid.RIGHT)) != 0 && this.isLeft(x + 1, y, lo, hi)) {
+      if (way != NO_WAY) {
+        return JUNCTION;
+      }
+      way = cell + 1;
+    }
+    return way;
+  }
+
+  // returns where the next filled cell goes
+  //EFFECT: fills the given dead end, then the cell it led to while that becomes a dead end,
+  // stopping at a junction, at start or end, or at the edge of the rows from lo up to hi
+  int walk(int cell, int lo, int hi, int at) {
+    int width = this.grid.width;
+    int next = this.wayOut(cell, lo, hi);
+    while (next != JUNCTION) {
+      int x = cell % width;
+      int word = cell / width * this.grid.stride + (x >>> 6);
+      this.left.set(word, this.left.get(word) & ~(1L << x));
+      if (this.filled != null) {
+        this.filled.set(at, cell);
+      }
+      at += 1;
+      if (next == NO_WAY || next == this.start || next == this.end || next < lo * width
+          || next >= hi * width) {
+        next = JUNCTION;
+      }
+      else {
+        cell = next;
+        next = this.wayOut(cell, lo, hi);
+      }
+    }
+    return at;
+  }
+
+  //EFFECT: closes the bits of the cells left; the filled cells go with the search's result
+  public void close() {
+    this.left.close();
+  }
+
+  // the cells left from start to end, both included, empty if end cannot be reached: in a
+  // perfect maze every cell left but start and end has two ways out, one back and one on
+  int[] corridor() {
+    int[] path = new int[16];
+    int length = 1;
+    path[0] = this.start;
+    int back = -1;
+    int cell = this.start;
+    while (cell != this.end) {
+      int next = NO_WAY;
+      for (int dir = Grid.UP; dir <= Grid.RIGHT && next == NO_WAY; dir += 1) {
+        if (this.grid.canMove(cell, dir)) {
+          int neighbor = this.grid.neighbor(cell, dir);
+          if (neighbor != back && this.isLeft(neighbor, 0, this.grid.height)) {
+            next = neighbor;
+          }
+        }
+      }
+      if (next == NO_WAY || length == this.grid.cells()) {
+        return new int[0];
+      }
+      if (length == path.length) {
+        path = Arrays.copyOf(path, Math.min(this.grid.cells(), length * 2));
+      }
+      path[length] = next;
+      length += 1;
+      back = cell;
+      cell = next;
+    }
+    return Arrays.copyOf(path, length);
+  }
+}
+
+// RecursiveAction that splits a range of bands in half until it is one band, then fills it
+class FillBands extends RecursiveAction {
+  private final DeadEndFiller filler;
+  // fills the bands from first up to but not last
+  private final int first;
+  private final int last;
+
+  FillBands(DeadEndFiller filler, int first, int last) {
+    this.filler = filler;
+    this.first = first;
+    this.last = last;
+  }
+
+  //EFFECT: fills the dead ends of this range's bands, in parallel halves when there are several
+  protected void compute() {
+    if (this.last - this.first == 1) {
+      this.filler.fillBand(this.first);
+    }
+    else {
+      int middle = (this.first + this.last) >>> 1;
+      invokeAll(new FillBands(this.filler, this.first, middle),
+          new FillBands(this.filler, middle, this.last));
+    }
+  }
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// keeps the spanning tree of a grid's passages as a link-cut forest, so edges can be cut from
+// it and linked into it, and cells asked which piece they are in, each in O(log n) amortized
+// steps instead of a walk over the whole maze; that lets a region of the maze be generated
+// again with work that grows with the region, not the maze
+// the forest is a splay tree over each path of the tree it has last walked (ordered from the
+// root of the tree down, reversed where flipped says so) plus an up pointer from the top of
+// every path to the cell above it
+class DynamicSpanningTree {
+  static final int NONE = -1;
+
+  final Grid grid;
+  // a cell's parent in its splay tree, or the cell above its path when it is the splay's root
+  private final int[] up;
+  private final int[] left;
+  private final int[] right;
+  // cells in each splay subtree, so a whole path's length is the size of its splay's root
+  private final int[] sizes;
+  // whether each splay subtree's order is reversed and not yet pushed down to its children
+  private final boolean[] flipped;
+  // the cells from a splay's root down to the cell being splayed, reused for every splay
+  private final int[] stack;
+
+  // a forest of the passages the given grid has open now, one tree per connected piece
+  DynamicSpanningTree(Grid grid) {
+    this.grid = grid;
+    this.up = new int[grid.cells()];
+    this.left = new int[grid.cells()];
+    this.right = new int[grid.cells()];
+    this.sizes = new int[grid.cells()];
+    this.flipped = new boolean[grid.cells()];
+    this.stack = new int[grid.cells()];
+    Arrays.fill(this.left, NONE);
+    Arrays.fill(this.right, NONE);
+    Arrays.fill(this.sizes, 1);
+    // every cell on a path of its own, its up pointer at its parent in a breadth-first walk
+    int[] queue = this.stack;
+    boolean[] seen = this.flipped;
+    for (int root = 0; root < grid.cells(); root += 1) {
+      if (!seen[root]) {
+        int head = 0;
+        int tail = 1;
+        queue[0] = root;
+        seen[root] = true;
+        this.up[root] = NONE;
+        while (head != tail) {
+          int next = queue[head];
+          head += 1;
+          for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+            if (grid.canMove(next, dir) && !seen[grid.neighbor(next, dir)]) {
+              int child = grid.neighbor(next, dir);
+              seen[child] = true;
+              this.up[child] = next;
+              queue[tail] = child;
+              tail += 1;
+            }
+          }
+        }
+      }
+    }
+    Arrays.fill(this.flipped, false);
+  }
+
+  // whether the given cell is the root of its splay tree, its up pointer leading off its path
+  boolean isSplayRoot(int cell) {
+    int parent = this.up[cell];
+    return parent == NONE || (this.left[parent] != cell && this.right[parent] != cell);
+  }
+
+  int size(int cell) {
+    if (cell == NONE) {
+      return 0;
+    }
+    return this.sizes[cell];
+  }
+
+  //EFFECT: reverses the given cell's children if its subtree is flipped, passing the flip on
+  void push(int cell) {
+    if (this.flipped[cell]) {
+      int swap = this.left[cell];
+      this.left[cell] = this.right[cell];
+      this.right[cell] = swap;
+      if (this.left[cell] != NONE) {
+        this.flipped[this.left[cell]] = !this.flipped[this.left[cell]];
+      }
+      if (this.right[cell] != NONE) {
+        this.flipped[this.right[cell]] = !this.flipped[this.right[cell]];
+      }
+      this.flipped[cell] = false;
+    }
+  }
+
+  //EFFECT: counts the given cell's subtree again from its children
+  void update(int cell) {
+    this.sizes[cell] = 1 + this.size(this.left[cell]) + this.size(this.right[cell]);
+  }
+
+  //EFFECT: moves the given cell above its splay parent, keeping their order
+  void rotate(int cell) {
+    int parent = this.up[cell];
+    int grand = this.up[parent];
+    if (!this.isSplayRoot(parent)) {
+      if (this.left[grand] == parent) {
+        this.left[grand] = cell;
+      }
+      else {
+        this.right[grand] = cell;
+      }
+    }
+    this.up[cell] = grand;
+    if (this.left[parent] == cell) {
+      this.left[parent] = this.right[cell];
+      if (this.right[cell] != NONE) {
+        this.up[this.right[cell]] = parent;
+      }
+      this.right[cell] = parent;
+    }
+    else {
+      this.right[parent] = this.left[cell];
+      if (this.left[cell] != NONE) {
+        this.up[this.left[cell]] = parent;
+      }
+      this.left[cell] = parent;
+    }
+    this.up[parent] = cell;
+    this.update(parent);
+    this.update(cell);
+  }
+
+  //EFFECT: makes the given cell the root of its splay tree
+  void splay(int cell) {
+    // flips are pushed down from the root first, so every rotation sees its real children
+    int depth = 0;
+    this.stack[depth] = cell;
+    for (int at = cell; !this.isSplayRoot(at); at = this.up[at]) {
+      depth += 1;
+      this.stack[depth] = this.up[at];
+    }
+    for (int i = depth; i >= 0; i -= 1) {
+      this.push(this.stack[i]);
+    }
+    while (!this.isSplayRoot(cell)) {
+      int parent = this.up[cell];
+      if (!this.isSplayRoot(parent)) {
+        int grand = this.up[parent];
+        if ((this.left[grand] == parent) == (this.left[parent] == cell)) {
+          this.rotate(parent);
+        }
+        else {
+          this.rotate(cell);
+        }
+      }
+      this.rotate(cell);
+    }
+  }
+
+  //EFFECT: makes the path from the root of the given cell's tree down to the cell one splay
+  // tree, with the cell at its root and nothing below the cell on it
+  void access(int cell) {
+    int below = NONE;
+    for (int at = cell; at != NONE; at = this.up[at]) {
+      this.splay(at);
+      this.right[at] = below;
+      this.update(at);
+      below = at;
+    }
+    this.splay(cell);
+  }
+
+  //EFFECT: makes the given cell the root of its tree
+  void makeRoot(int cell) {
+    this.access(cell);
+    this.flipped[cell] = !this.flipped[cell];
+  }
+
+  // the root of the given cell's tree, the same for every cell of the tree until it changes
+  int findRoot(int cell) {
+    this.access(cell);
+    int at = cell;
+    this.push(at);
+    while (this.left[at] != NONE) {
+      at = this.left[at];
+      this.push(at);
+    }
+    this.splay(at);
+    return at;
+  }
+
+  //EFFECT: joins the trees of the given cells, which must be different, with an edge between them
+  void link(int first, int second) {
+    this.makeRoot(first);
+    this.up[first] = second;
+  }
+
+  //EFFECT: removes the edge between the given cells, which must be in the tree
+  void cut(int first, int second) {
+    this.makeRoot(first);
+    this.access(second);
+    // the path is just first then second, so first is all that is left of second
+    this.up[first] = NONE;
+    this.left[second] = NONE;
+    this.update(second);
+  }
+
+  // the number of steps between the given cells, which must be in the same tree
+  int distance(int from, int to) {
+    this.makeRoot(from);
+    this.access(to);
+    return this.sizes[to] - 1;
+  }
+
+  // the cell after the first given one on the way to the second, the second itself if they are
+  // the same, both in the same tree
+  int next(int from, int to) {
+    if (from == to) {
+      return to;
+    }
+    this.makeRoot(to);
+    this.access(from);
+    // the path runs from to down to from, so the cell before from is the last one left of it
+    int at = this.left[from];
+    this.push(at);
+    while (this.right[at] != NONE) {
+      at = this.right[at];
+      this.push(at);
+    }
+    this.splay(at);
+    return at;
+  }
+
+  // the cells from the first given cell to the second, both included, in the same tree
+  int[] path(int from, int to) {
+    int[] path = new int[this.distance(from, to) + 1];
+    path[0] = from;
+    for (int i = 1; i < path.length; i += 1) {
+      path[i] = this.next(path[i - 1], to);
+    }
+    return path;
+  }
+
+  //EFFECT: gives every edge between two cells of the given rectangle a new random weight under
+  // the given preference, closes the passages among them, and opens the cheapest of them that
+  // join the pieces the maze fell into back into one tree, a Kruskal's algorithm over the
+  // rectangle's edges alone; passages into the rectangle from outside stay as they are
+  void regenerate(int x, int y, int width, int height, SplittableRandom rand,
+      boolean horizPref, boolean vertPref) {
+    if (x < 0 || y < 0 || width < 1 || height < 1 || x + width > this.grid.width
+        || y + height > this.grid.height) {
+      throw new IllegalArgumentException("A " + width + "x" + height + " region at (" + x + ", "
+          + y + ") is not inside a " + this.grid.width + "x" + this.grid.height + " maze");
+    }
+    int rightBound = Grid.rightBound(horizPref, vertPref);
+    int downBound = Grid.downBound(horizPref, vertPref);
+    // every edge of the region, sorted by its new weight, then a random tie break
+    long[] keys = new long[2 * width * height];
+    int count = 0;
+    for (int row = y; row < y + height; row += 1) {
+      for (int column = x; column < x + width; column += 1) {
+        int cell = this.grid.index(column, row);
+        if (column < x + width - 1) {
+          count = this.reweigh(cell * 2 + Grid.RIGHT_EDGE, rand.nextInt(rightBound), rand, keys,
+              count);
+        }
+        if (row < y + height - 1) {
+          count = this.reweigh(cell * 2 + Grid.DOWN_EDGE, rand.nextInt(downBound), rand, keys,
+              count);
+        }
+      }
+    }
+    Arrays.sort(keys, 0, count);
+    // the pieces each hold some cell of the region, which start out joined by their trees' roots
+    NodeUnionFind pieces = new NodeUnionFind(width * height);
+    long[] roots = new long[width * height];
+    for (int i = 0; i < roots.length; i += 1) {
+      int cell = this.grid.index(x + i % width, y + i / width);
+      roots[i] = ((long) this.findRoot(cell) << 32) | i;
+    }
+    Arrays.sort(roots);
+    for (int i = 1; i < roots.length; i += 1) {
+      if ((roots[i] >>> 32) == (roots[i - 1] >>> 32)) {
+        pieces.union((int) roots[i - 1], (int) roots[i]);
+      }
+    }
+    for (int i = 0; i < count && pieces.size() > 1; i += 1) {
+      int edge = (int) keys[i];
+      int from = this.grid.edgeFrom(edge);
+      int to = this.grid.edgeTo(edge);
+      int fromPiece = (this.grid.y(from) - y) * width + this.grid.x(from) - x;
+      int toPiece = (this.grid.y(to) - y) * width + this.grid.x(to) - x;
+      if (pieces.union(fromPiece, toPiece)) {
+        this.grid.open(edge);
+        this.link(from, to);
+      }
+    }
+  }
+
+  // returns the count of keys after adding the given edge's
+  //EFFECT: sets the given edge's weight, closes it and cuts it from the tree if it was open,
+  // and adds its key (weight, random tie break, then the edge) to the given keys
+  int reweigh(int edge, int weight, SplittableRandom rand, long[] keys, int count) {
+    this.grid.setWeight(edge, weight);
+    if (this.grid.isOpen(edge)) {
+      this.cut(this.grid.edgeFrom(edge), this.grid.edgeTo(edge));
+      this.grid.close(edge);
+    }
+    keys[count] = ((long) weight << 52) | ((long) rand.nextInt(1 << 20) << 32) | edge;
+    return count + 1;
+  }
+}
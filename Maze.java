@@ -1,380 +1,903 @@
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Random;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
 
 import tester.*;
 import javalib.impworld.*;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javalib.worldimages.*;
 
-// to represent a node
-class Node {
-  private final int x;
-  private final int y;
-  private Color color;
-  // arraylist of edges, again in clockwise order, starting from this
-  private final ArrayList<Edge> edges;
+// to represent the cells and passages of a maze, packed into primitive stores kept on the heap
+// or off it in mapped files, whichever storage the grid was made with
+// cells are indexed y * width + x, edges are indexed cell * 2 + RIGHT_EDGE or DOWN_EDGE
+class Grid implements AutoCloseable {
+  // orientation of an edge, from a cell to its right or lower neighbor
+  static final int RIGHT_EDGE = 0;
+  static final int DOWN_EDGE = 1;
 
-  // helper constructor for node 
-  Node(int y, int x) {
-    this.x = x;
-    this.y = y;
-    this.color = Color.LIGHT_GRAY;
-    this.edges = new ArrayList<Edge>();
+  // directions to move from a cell, in the order its walls are drawn
+  static final int UP = 0;
+  static final int LEFT = 1;
+  static final int DOWN = 2;
+  static final int RIGHT = 3;
+
+  // colors of a cell, as indexes into PALETTE
+  static final byte UNSEEN = 0;
+  static final byte SEEN = 1;
+  static final byte PATH = 2;
+  static final byte EXIT = 3;
+  static final Color[] PALETTE = {Color.LIGHT_GRAY, Color.CYAN, Color.green, Color.red};
+
+  // every edge weight is below this
+  static final int WEIGHT_BOUND = 100;
+  // the most cells a grid can have, so every edge index fits in an int: 32768x32768 at most
+  // square, and a 50000x50000 maze is refused; past this, cells and edges would have to be longs
+  // through every search, index and trace over the grid
+  static final int MAX_CELLS = 1 << 30;
+
+  final int width;
+  final int height;
+  // longs of passage bits per row, each row starts on a fresh long
+  final int stride;
+  // where the stores below are kept, and where algorithms over the grid keep theirs
+  private final IStorage storage;
+  // bit set when the passage from a cell to its right or lower neighbor is open
+  private final LongStore rightOpen;
+  private final LongStore downOpen;
+  // the directions each cell can move in, bit 1 << UP, LEFT, DOWN or RIGHT set when that side is
+  // open, kept in step with the passage bits so a move is a single bit test
+  private final ByteStore openSides;
+  // only made once weights are needed, mazes loaded from a file never need them
+  private ByteStore weights;
+  private final ByteStore colors;
+  // cells whose color or passages changed since the last clearDirty, in the order they changed
+  private final BitSet dirty;
+  private int[] dirtyCells;
+  private int dirtyCount;
+  // set when so much changed that every cell should be treated as dirty
+  private boolean allDirty;
+
+  Grid(int width, int height) {
+    this(width, height, new HeapStorage());
   }
 
-  Node(int y, int x, Color color, ArrayList<Edge> edges) {
-    this.x = x;
-    this.y = y;
-    this.color = color;
-    this.edges = edges;
+  Grid(int width, int height, IStorage storage) {
+    if ((long) width * height > MAX_CELLS) {
+      throw new IllegalArgumentException("A " + width + "x" + height + " maze has more than "
+          + MAX_CELLS + " cells");
+    }
+    this.width = width;
+    this.height = height;
+    this.stride = (width + 63) >>> 6;
+    this.storage = storage;
+    this.rightOpen = storage.longs(this.stride * height);
+    this.downOpen = storage.longs(this.stride * height);
+    this.openSides = storage.bytes(width * height);
+    this.colors = storage.bytes(width * height);
+    // grows with the cells that change, not with the maze
+    this.dirty = new BitSet();
+    this.dirtyCells = new int[16];
+    this.dirtyCount = 0;
+    this.allDirty = true;
   }
 
-  // EFFECT: creates and adds an edge to edges, from this to given node
-  void makeEdge(Node to, int weight) {
-    Edge made = new Edge(this, to, weight);
-    this.edges.add(made);
-    to.edges.add(made);
+  int cells() {
+    return this.width * this.height;
   }
 
-  void randomizeEdgeWeights(Boolean horizPref, Boolean vertPref) {
-    for (Edge e : this.edges) {
-      e.randomizeWeight(horizPref, vertPref);
+  IStorage storage() {
+    return this.storage;
+  }
+
+  //EFFECT: closes every store of the grid, which must not be used again; what algorithms over
+  // it made in its storage is theirs to close
+  public void close() {
+    this.rightOpen.close();
+    this.downOpen.close();
+    this.openSides.close();
+    this.colors.close();
+    if (this.weights != null) {
+      this.weights.close();
     }
   }
 
-  //EFFECT: sets this pixel's colour to given colour
-  void changeColor(Color c) {
-    this.color = c;
+  // the number of edges between neighboring cells
+  int edgeCount() {
+    return (this.width - 1) * this.height + this.width * (this.height - 1);
+  }
+
+  int index(int x, int y) {
+    return y * this.width + x;
   }
 
-  //EFFECT: adds an edge to edges
-  void addEdge(Edge edge) {
-    this.edges.add(edge);
-    edge.otherEnd(this).edges.add(edge);
+  int x(int cell) {
+    return cell % this.width;
   }
 
-  // returns true if this node has x/y pos equivalent to other node + given dir
-  boolean isAdjacent(Node adjacent, boolean horiz, int difference) {
-    if (horiz) {
-      return this.y == adjacent.y + difference;
+  int y(int cell) {
+    return cell / this.width;
+  }
+
+  // returns true if the given edge joins two cells inside the grid
+  boolean hasEdge(int edge) {
+    int cell = edge >> 1;
+    if ((edge & 1) == RIGHT_EDGE) {
+      return this.x(cell) < this.width - 1;
     }
     else {
-      return this.x == adjacent.x + difference;
+      return this.y(cell) < this.height - 1;
     }
   }
 
-  //EFFECT: adds this node's edges to the given ArrayList of edges
-  void addEdges(ArrayList<Edge> edges) {
-    for (Edge e : this.edges) {
-      if (!edges.contains(e)) {
-        edges.add(e);
-      }
+  int edgeFrom(int edge) {
+    return edge >> 1;
+  }
+
+  int edgeTo(int edge) {
+    if ((edge & 1) == RIGHT_EDGE) {
+      return (edge >> 1) + 1;
+    }
+    else {
+      return (edge >> 1) + this.width;
     }
   }
 
-  //EFFECT: adds all nodes connected to this to given list of nodes, either front or back of list
-  void addConnections(ArrayList<Node> nodes, ArrayList<Node> seen, ArrayList<Edge> pathsForward,
-      HashMap<Node, Node> pathBehind, boolean depthFirst) {
-    for (Edge e : edges) {
-      if (pathsForward.contains(e)) {
-        Node next = e.otherEnd(this);
-        if (!seen.contains(next)) {
-          if (depthFirst) {
-            nodes.add(0, next);
-          }
-          else {
-            nodes.add(next);
-          }
-          pathBehind.put(next, this);
-        }
-      }
+  int weight(int edge) {
+    if (this.weights == null) {
+      return 0;
     }
+    return this.weights.get(edge);
   }
 
+  //EFFECT: makes every edge weight 0, if there are no weights yet
+  void ensureWeights() {
+    if (this.weights == null) {
+      this.weights = this.storage.bytes(this.cells() * 2);
+    }
+  }
 
-  WorldImage draw(ArrayList<Edge> connections) {
-    WorldImage nodeWorldImage = new RectangleImage(15, 15, OutlineMode.SOLID, this.color);
-    for (Edge e : this.edges) {
-      if (!connections.contains(e)) {
-        nodeWorldImage = e.addWalls(this, nodeWorldImage);
-      }
+  //EFFECT: sets the weight of the given edge
+  void setWeight(int edge, int weight) {
+    this.ensureWeights();
+    this.weights.set(edge, (byte) weight);
+  }
+
+  //EFFECT: changes every edge weight to a random number based on horiz or vert preference,
+  // each row drawing from its own stream split off the given one, so rows never share a generator
+  void randomizeWeights(SplittableRandom rand, boolean horizPref, boolean vertPref) {
+    this.ensureWeights();
+    int rightBound = rightBound(horizPref, vertPref);
+    int downBound = downBound(horizPref, vertPref);
+    for (int y = 0; y < this.height; y += 1) {
+      this.randomizeRow(y, rand.split(), rightBound, downBound);
     }
-    return nodeWorldImage;
   }
 
-  boolean isValidMove(Node node, ArrayList<Edge> edges) {
-    for (Node n : this.validAdjacent(edges)) {
-      if (n == node) {
-        return true;
-      }
+  // the bound on right edge weights under the given preference, low to favor right passages
+  static int rightBound(boolean horizPref, boolean vertPref) {
+    if (horizPref) {
+      return 15;
+    }
+    else if (vertPref) {
+      return WEIGHT_BOUND;
+    }
+    else {
+      return 20;
+    }
+  }
+
+  // the bound on down edge weights under the given preference, low to favor down passages
+  static int downBound(boolean horizPref, boolean vertPref) {
+    if (horizPref) {
+      return WEIGHT_BOUND;
+    }
+    else if (vertPref) {
+      return 15;
+    }
+    else {
+      return 20;
     }
-    return false;
   }
 
-  ArrayList<Node> validAdjacent(ArrayList<Edge> edges) {
-    ArrayList<Node> valid = new ArrayList<Node>();
-    for (Edge e : this.edges) {
-      if (edges.contains(e)) {
-        valid.add(e.otherEnd(this));
+  //EFFECT: changes the weights of the edges right of and below every cell of the given row
+  // to random numbers below the given bounds
+  void randomizeRow(int y, SplittableRandom rand, int rightBound, int downBound) {
+    for (int cell = y * this.width; cell < (y + 1) * this.width; cell += 1) {
+      this.weights.set(cell * 2 + RIGHT_EDGE, (byte) rand.nextInt(rightBound));
+      this.weights.set(cell * 2 + DOWN_EDGE, (byte) rand.nextInt(downBound));
+    }
+  }
+
+  // returns every edge inside the grid once, in order of weight, counting how many
+  // edges have each weight instead of comparing them, since weights are below WEIGHT_BOUND
+  // edges of the same weight come in random order, so ties do not favor the top left
+  // the edges are kept in the grid's storage, as many as the grid has cells over again
+  IntStore sortedEdges(SplittableRandom rand) {
+    this.ensureWeights();
+    // starts[w + 1] counts the edges of weight w, then becomes where weight w + 1 starts
+    int[] starts = new int[WEIGHT_BOUND + 1];
+    for (int y = 0; y < this.height; y += 1) {
+      for (int x = 0; x < this.width; x += 1) {
+        int cell = this.index(x, y);
+        if (x < this.width - 1) {
+          starts[this.weights.get(cell * 2 + RIGHT_EDGE) + 1] += 1;
+        }
+        if (y < this.height - 1) {
+          starts[this.weights.get(cell * 2 + DOWN_EDGE) + 1] += 1;
+        }
       }
     }
-    return valid;
+    for (int w = 1; w <= WEIGHT_BOUND; w += 1) {
+      starts[w] += starts[w - 1];
+    }
+    IntStore sorted = this.storage.ints(this.edgeCount());
+    int[] next = Arrays.copyOf(starts, WEIGHT_BOUND);
+    for (int y = 0; y < this.height; y += 1) {
+      for (int x = 0; x < this.width; x += 1) {
+        int cell = this.index(x, y);
+        if (x < this.width - 1) {
+          int edge = cell * 2 + RIGHT_EDGE;
+          sorted.set(next[this.weights.get(edge)], edge);
+          next[this.weights.get(edge)] += 1;
+        }
+        if (y < this.height - 1) {
+          int edge = cell * 2 + DOWN_EDGE;
+          sorted.set(next[this.weights.get(edge)], edge);
+          next[this.weights.get(edge)] += 1;
+        }
+      }
+    }
+    for (int w = 0; w < WEIGHT_BOUND; w += 1) {
+      int bucketStart = starts[w];
+      for (int i = starts[w + 1] - 1; i > bucketStart; i -= 1) {
+        int j = bucketStart + rand.nextInt(i - bucketStart + 1);
+        int swap = sorted.get(i);
+        sorted.set(i, sorted.get(j));
+        sorted.set(j, swap);
+      }
+    }
+    return sorted;
   }
-}
 
-// to represent an edge (node to node)
-class Edge {
-  // not directional, but from and to make it easy to remember/distinguish the points
-  private final Node from;
-  private final Node to;
-  private int weight;
+  // the long holding the passage bits of the given cell
+  private int word(int cell) {
+    return this.y(cell) * this.stride + (this.x(cell) >>> 6);
+  }
 
-  // constructor
-  Edge(Node from, Node to, int weight) {
-    this.from = from;
-    this.to = to;
-    this.weight = weight;
+  // returns true if the passage along the given edge is open
+  boolean isOpen(int edge) {
+    int cell = edge >> 1;
+    long bit = 1L << this.x(cell);
+    if ((edge & 1) == RIGHT_EDGE) {
+      return (this.rightOpen.get(this.word(cell)) & bit) != 0;
+    }
+    else {
+      return (this.downOpen.get(this.word(cell)) & bit) != 0;
+    }
   }
 
-  //  boolean equals(Edge edge) {
-  //    boolean thisToEqTo = this.to == edge.to;
-  //    boolean thisFromEqFrom = this.from == edge.from;
-  //    boolean thisToEqFrom = this.to == edge.from;
-  //    boolean thisFromEqTo = this.from == edge.to;
-  //    return ((thisToEqTo && thisFromEqFrom) || (thisToEqFrom && thisFromEqTo));
-  //  }
+  //EFFECT: opens the passage along the given edge
+  void open(int edge) {
+    int cell = edge >> 1;
+    long bit = 1L << this.x(cell);
+    if ((edge & 1) == RIGHT_EDGE) {
+      this.rightOpen.set(this.word(cell), this.rightOpen.get(this.word(cell)) | bit);
+      this.openSide(cell, RIGHT);
+      this.openSide(cell + 1, LEFT);
+    }
+    else {
+      this.downOpen.set(this.word(cell), this.downOpen.get(this.word(cell)) | bit);
+      this.openSide(cell, DOWN);
+      this.openSide(cell + this.width, UP);
+    }
+    this.markDirty(cell);
+  }
 
-  // returns the other vertice of given node in this
-  Node otherEnd(Node node) {
-    if (node == this.from) {
-      return to;
+  //EFFECT: closes the passage along the given edge
+  void close(int edge) {
+    int cell = edge >> 1;
+    long bit = 1L << this.x(cell);
+    if ((edge & 1) == RIGHT_EDGE) {
+      this.rightOpen.set(this.word(cell), this.rightOpen.get(this.word(cell)) & ~bit);
+      this.closeSide(cell, RIGHT);
+      this.closeSide(cell + 1, LEFT);
     }
-    return from;
+    else {
+      this.downOpen.set(this.word(cell), this.downOpen.get(this.word(cell)) & ~bit);
+      this.closeSide(cell, DOWN);
+      this.closeSide(cell + this.width, UP);
+    }
+    this.markDirty(cell);
+  }
+
+  //EFFECT: sets the given side of the given cell open
+  private void openSide(int cell, int dir) {
+    this.openSides.set(cell, (byte) (this.openSides.get(cell) | (1 << dir)));
   }
 
-  // returns if from has same representative as to in the nodeUnionFind hashmap
-  boolean repsSame(NodeUnionFind nuf) {
-    return nuf.find(this.from) == nuf.find(this.to);
+  //EFFECT: sets the given side of the given cell closed
+  private void closeSide(int cell, int dir) {
+    this.openSides.set(cell, (byte) (this.openSides.get(cell) & ~(1 << dir)));
   }
 
-  // EFFECT: unions the representatives of this' to and from
-  void unionToFrom(NodeUnionFind nuf) {
-    nuf.union(this.to, this.from);
+  // the number of longs in each plane of passage bits
+  int passageWords() {
+    return this.stride * this.height;
   }
 
-  // adds the walls of the maze to given WorldImage of a single node
-  // EFFECT: adds the walls to the given WorldImage, changing it
-  WorldImage addWalls(Node node, WorldImage nodeWorldImage) {
-    Node otherEnd = this.otherEnd(node);
-    if (otherEnd.isAdjacent(node, true, -1)) {
-      nodeWorldImage = new AboveImage(new LineImage(new Posn(15, 0), Color.black), nodeWorldImage);
+  // the given long of the right or down plane of passage bits
+  long passages(boolean down, int word) {
+    if (down) {
+      return this.downOpen.get(word);
     }
-    else if (otherEnd.isAdjacent(node, true, 1)) {
-      nodeWorldImage = new AboveImage(nodeWorldImage, new LineImage(new Posn(15, 0), Color.black));
+    else {
+      return this.rightOpen.get(word);
     }
-    else if (otherEnd.isAdjacent(node, false, 1)) {
-      nodeWorldImage = new BesideImage(nodeWorldImage, new LineImage(new Posn(0, 15), Color.black));
+  }
+
+  //EFFECT: copies passage bits, from the given long of the right or down plane onwards,
+  // into the given buffer until it is full
+  void getPassages(boolean down, int from, LongBuffer into) {
+    if (down) {
+      this.downOpen.get(from, into);
     }
     else {
-      nodeWorldImage = new BesideImage(new LineImage(new Posn(0, 15), Color.black), nodeWorldImage);
+      this.rightOpen.get(from, into);
     }
-    return nodeWorldImage;
   }
 
-  int compareWeight(Edge other) {
-    return this.weight - other.weight;
+  //EFFECT: copies the rest of the given buffer into the passage bits of the right or down plane,
+  // from the given long onwards
+  void setPassages(boolean down, int from, LongBuffer bits) {
+    int count = bits.remaining();
+    if (down) {
+      this.downOpen.set(from, bits);
+    }
+    else {
+      this.rightOpen.set(from, bits);
+    }
+    this.findOpenSides(from / this.stride, (from + count - 1) / this.stride + 1);
+    this.allDirty = true;
   }
 
-  //EFFECT: changes this.weight to a random number based on horiz or vert preference
-  void randomizeWeight(Boolean horizPref, Boolean vertPref) {
-    Random rand = new Random();
-    if (horizPref) { 
-      if (to.isAdjacent(from, true, -1) || to.isAdjacent(from, true, 1)) {
-        this.weight = rand.nextInt(100);
-      }
-      else {
-        this.weight = rand.nextInt(15);
+  //EFFECT: replaces both planes of passage bits with the given ones, laid out the same way
+  void setPassages(long[] right, long[] down) {
+    this.rightOpen.set(0, LongBuffer.wrap(right, 0, this.passageWords()));
+    this.downOpen.set(0, LongBuffer.wrap(down, 0, this.passageWords()));
+    this.findOpenSides(0, this.height - 1);
+    this.allDirty = true;
+  }
+
+  //EFFECT: works out the open sides of every cell from the first row to the last, included,
+  // from the passage bits
+  void findOpenSides(int firstRow, int lastRow) {
+    for (int y = Math.max(0, firstRow); y <= Math.min(this.height - 1, lastRow); y += 1) {
+      int row = y * this.stride;
+      for (int x = 0; x < this.width; x += 1) {
+        int sides = 0;
+        if (x < this.width - 1 && (this.rightOpen.get(row + (x >>> 6)) & (1L << x)) != 0) {
+          sides |= 1 << RIGHT;
+        }
+        if (x > 0 && (this.rightOpen.get(row + ((x - 1) >>> 6)) & (1L << (x - 1))) != 0) {
+          sides |= 1 << LEFT;
+        }
+        if (y < this.height - 1 && (this.downOpen.get(row + (x >>> 6)) & (1L << x)) != 0) {
+          sides |= 1 << DOWN;
+        }
+        if (y > 0 && (this.downOpen.get(row - this.stride + (x >>> 6)) & (1L << x)) != 0) {
+          sides |= 1 << UP;
+        }
+        this.openSides.set(y * this.width + x, (byte) sides);
       }
     }
-    else if (vertPref) { 
-      if (to.isAdjacent(from, false, -1) || to.isAdjacent(from, false, 1)) {
-        this.weight = rand.nextInt(100);
-      }
-      else {
-        this.weight = rand.nextInt(15);
-      }
+  }
+
+  //EFFECT: closes every passage, walling off every cell
+  void closeAll() {
+    this.rightOpen.fill(0L);
+    this.downOpen.fill(0L);
+    this.openSides.fill((byte) 0);
+    this.allDirty = true;
+  }
+
+  // returns true if the given cell has a neighbor in the given direction
+  boolean hasNeighbor(int cell, int dir) {
+    if (dir == UP) {
+      return cell >= this.width;
+    }
+    else if (dir == LEFT) {
+      return this.x(cell) > 0;
+    }
+    else if (dir == DOWN) {
+      return cell < this.cells() - this.width;
+    }
+    else {
+      return this.x(cell) < this.width - 1;
+    }
+  }
+
+  // the neighbor of the given cell in the given direction, which must exist
+  int neighbor(int cell, int dir) {
+    if (dir == UP) {
+      return cell - this.width;
+    }
+    else if (dir == LEFT) {
+      return cell - 1;
+    }
+    else if (dir == DOWN) {
+      return cell + this.width;
     }
     else {
-      this.weight = rand.nextInt(20);
+      return cell + 1;
+    }
+  }
+
+  // the edge between the given cell and its neighbor in the given direction
+  int edgeToward(int cell, int dir) {
+    if (dir == UP) {
+      return (cell - this.width) * 2 + DOWN_EDGE;
+    }
+    else if (dir == LEFT) {
+      return (cell - 1) * 2 + RIGHT_EDGE;
+    }
+    else if (dir == DOWN) {
+      return cell * 2 + DOWN_EDGE;
+    }
+    else {
+      return cell * 2 + RIGHT_EDGE;
+    }
+  }
+
+  // returns true if the given cell can move to its neighbor in the given direction
+  boolean canMove(int cell, int dir) {
+    return (this.openSides.get(cell) & (1 << dir)) != 0;
+  }
+
+  // the directions the given cell can move in, bit 1 << UP, LEFT, DOWN or RIGHT set for each
+  int openSides(int cell) {
+    return this.openSides.get(cell);
+  }
+
+  byte color(int cell) {
+    return this.colors.get(cell);
+  }
+
+  //EFFECT: sets the given cell's color
+  void paint(int cell, byte color) {
+    if (this.colors.get(cell) != color) {
+      this.colors.set(cell, color);
+      this.markDirty(cell);
+    }
+  }
+
+  //EFFECT: sets every cell's color back to UNSEEN
+  void clearColors() {
+    this.colors.fill(UNSEEN);
+    this.allDirty = true;
+  }
+
+  //EFFECT: records that the given cell needs to be drawn again
+  void markDirty(int cell) {
+    if (this.allDirty || this.dirty.get(cell)) {
+      return;
+    }
+    // past a quarter of the maze, redrawing everything is cheaper than tracking cells
+    if (this.dirtyCount >= this.cells() / 4) {
+      this.allDirty = true;
+      return;
+    }
+    if (this.dirtyCount == this.dirtyCells.length) {
+      this.dirtyCells = Arrays.copyOf(this.dirtyCells, this.dirtyCount * 2);
+    }
+    this.dirty.set(cell);
+    this.dirtyCells[this.dirtyCount] = cell;
+    this.dirtyCount += 1;
+  }
+
+  //EFFECT: records that every cell needs to be drawn again
+  void markAllDirty() {
+    this.allDirty = true;
+  }
+
+  // returns true if every cell should be drawn again
+  boolean isAllDirty() {
+    return this.allDirty;
+  }
+
+  int dirtyCount() {
+    return this.dirtyCount;
+  }
+
+  // the i-th cell that changed since the last clearDirty
+  int dirtyCell(int i) {
+    return this.dirtyCells[i];
+  }
+
+  //EFFECT: forgets which cells changed, once they have been drawn
+  void clearDirty() {
+    for (int i = 0; i < this.dirtyCount; i += 1) {
+      this.dirty.clear(this.dirtyCells[i]);
     }
+    this.dirtyCount = 0;
+    this.allDirty = false;
   }
 }
 
 class Maze extends World {
-  private ArrayList<ArrayList<Node>> nodes;
-  private ArrayList<Edge> connections;
+  // the grid on screen, swapped for a new one when a maze built in the background is ready
+  private Grid grid;
   private final int width;
   private final int height;
-  private boolean depthFirstSearch;
-  private final Node start;
-  private final Node end;
-  private ArrayList<Node> path;
-  private ArrayList<Node> nodesSeen;
+  private ISearch search;
+  private final int start;
+  private final int end;
+  private int[] path;
+  // the last search or won game played back, a few bits a step, which k saves and l loads
+  private TraceRecording recording;
   private boolean toggleAnimate;
   private boolean player;
   private boolean playerToggleAnimate;
   private int playerY;
   private int playerX;
-  private final ArrayList<Node> playerNodesSeen;
+  private final CellTrace playerNodesSeen;
   private String overlay;
-  private int findTick;
-  private int drawTick;
-  private int playerFindTick;
+  // plays back the explored cells and path of the last search, or the player's moves
+  private final TraceAnimation animation;
   private boolean vertPref;
   private boolean horizPref;
+  // whether mazes are generated a row at a time by Eller's algorithm instead of by Kruskal's
+  private boolean rowByRow;
+  // whether mazes are generated by Boruvka's algorithm on every core instead of Kruskal's
+  private boolean parallel;
+  // the seed the current maze was generated from, the same seed always gives the same maze
+  private long seed;
+  // the generator of the current maze, made from its seed
+  private SplittableRandom rand;
+  // where the seeds of the mazes after this one come from
+  private final SplittableRandom seeds;
+  private final MazeRenderer renderer;
+  // the tree of the current maze from the exit, rebuilt with every new maze: the depth of a
+  // cell is how far it is from the exit, and its parent is the next move toward it
+  private TreeIndex index;
+  // whether cells nobody has colored are drawn by how far they are from the exit
+  private boolean heatMap;
+  // whether the last generation, search and frame's metrics are shown under the overlay, which
+  // is the only time they are kept
+  private boolean hud;
+  // the current maze's tree as a link-cut forest, made the first time a region is generated
+  // again and kept until the next maze: null until then; generating a region again leaves index
+  // null until something needs the whole tree, such as the heat map when next drawn
+  private DynamicSpanningTree dynamic;
+  // cells a side of the region the player can generate again around themselves
+  static final int REGION_SIZE = 20;
+  // the build of the next maze and its result, both null when none is running
+  private MazeBuilder building;
+  private Future<MazeSnapshot> built;
+  // builds one maze at a time, off the world's thread
+  private static final ExecutorService BUILDER =
+      Executors.newSingleThreadExecutor(new BuilderThreads());
 
   Maze(int width, int height) {
-    this.nodes = new ArrayList<ArrayList<Node>>();
-    this.width = width;
-    this.height = height;
-    //add "normal" nodes (to be edited)
-    for (int h = 0; h < height; h += 1) {
-      this.nodes.add(new ArrayList<Node>());
-      for (int w = 0; w < width; w += 1) {
-        this.nodes.get(h).add(new Node(h, w));
-      }
-    }
-    Random rand = new Random();
-    //add all edges right + down
-    if (vertPref) {
-      for (int h = 0; h < height; h += 1) {
-        for (int w = 0; w < width; w += 1) {
-          if (h < height - 1) {
-            this.nodes.get(h).get(w).makeEdge(this.nodes.get(h + 1).get(w), rand.nextInt(10));
-          }
-          if (w < width - 1) {
-            this.nodes.get(h).get(w).makeEdge(this.nodes.get(h).get(w + 1), rand.nextInt(100));
-          }
-        }
-      }
-    }
-    else if (horizPref) {
-      for (int h = 0; h < height; h += 1) {
-        for (int w = 0; w < width; w += 1) {
-          if (h < height - 1) {
-            this.nodes.get(h).get(w).makeEdge(this.nodes.get(h + 1).get(w), rand.nextInt(100));
-          }
-          if (w < width - 1) {
-            this.nodes.get(h).get(w).makeEdge(this.nodes.get(h).get(w + 1), rand.nextInt(10));
-          }
-        }
-      }
+    this(width, height, new SplittableRandom().nextLong());
+  }
+
+  Maze(int width, int height, long seed) {
+    this(new Grid(width, height), seed, true);
+  }
+
+  //for testing, keeps the given grid's edge weights
+  Maze(Grid grid) {
+    this(grid, 0, false);
+  }
+
+  Maze(Grid grid, long seed, boolean randomize) {
+    this(grid, seed, 0, grid.cells() - 1, randomize, true);
+  }
+
+  // builds a maze from a saved file, keeping its passages instead of generating new ones
+  Maze(MazeFile file) {
+    this(file.grid, file.seed, file.start, file.end, false, false);
+  }
+
+  // builds a maze over the given grid, randomizing its weights from the given seed and
+  // generating its passages from them when asked, otherwise keeping what the grid already has
+  Maze(Grid grid, long seed, int start, int end, boolean randomize, boolean generate) {
+    this.grid = grid;
+    this.width = grid.width;
+    this.height = grid.height;
+    this.seeds = new SplittableRandom(seed);
+    this.renderer = new MazeRenderer(grid);
+    this.seed = seed;
+    this.rand = new SplittableRandom(seed);
+    if (randomize) {
+      this.generate(seed);
     }
-    else {
-      for (int h = 0; h < height; h += 1) {
-        for (int w = 0; w < width; w += 1) {
-          if (h < height - 1) {
-            this.nodes.get(h).get(w).makeEdge(this.nodes.get(h + 1).get(w), rand.nextInt(100));
-          }
-          if (w < width - 1) {
-            this.nodes.get(h).get(w).makeEdge(this.nodes.get(h).get(w + 1), rand.nextInt(100));
-          }
-        }
-      }
+    else if (generate) {
+      this.cheapestSpanningPath();
     }
-    this.connections = this.cheapestSpanningPath();
 
-    this.start = this.nodes.get(0).get(0);
-    this.start.changeColor(Color.green);
-    this.end = this.nodes.get(height - 1).get(width - 1);
-    this.end.changeColor(Color.red);
-    this.depthFirstSearch = false;
-    this.overlay = "Breadth-first";
-    this.path = new ArrayList<Node>();
-    this.nodesSeen = new ArrayList<Node>();
-    this.playerNodesSeen = new ArrayList<Node>();
+    this.start = start;
+    this.end = end;
+    this.grid.paint(this.start, Grid.PATH);
+    this.grid.paint(this.end, Grid.EXIT);
+    this.index = new TreeIndex(this.grid, this.end);
+    this.search = new BreadthFirstSearch();
+    this.overlay = this.search.name();
+    this.path = new int[0];
+    this.playerNodesSeen = new CellTrace(this.width);
+    this.animation = new TraceAnimation();
     this.toggleAnimate = true;
     this.playerToggleAnimate = false;
     this.player = false;
-    this.findTick = 0;
-    this.drawTick = 0;
-    this.playerFindTick = 0;
 
-    this.pathFromTo(this.start, this.end, this.depthFirstSearch);
+    this.pathFromTo(this.start, this.end, this.search);
   }
 
-  ArrayList<Edge> cheapestSpanningPath() {
-    NodeUnionFind nuf = new NodeUnionFind();
-    nuf.setRepresentatives(this.nodes);
-    ArrayList<Edge> edgesInTree = new ArrayList<Edge>();
-    ArrayList<Edge> workList = new ArrayList<Edge>();
-    for (int w = 0; w < this.height; w += 1) {
-      for (int h = 0; h < this.width; h += 1) {
-        Node node = this.nodes.get(w).get(h);
-        node.addEdges(workList);
-      }
+  //EFFECT: makes the maze of the given seed, randomizing every edge weight from it
+  // and opening the cheapest spanning path over them, on every core when generating in parallel,
+  // or the rows Eller's algorithm makes from it when generating row by row
+  void generate(long seed) {
+    this.seed = seed;
+    this.rand = new SplittableRandom(seed);
+    this.builder(seed).generate(this.grid, this.rand);
+  }
+
+  // a builder of the maze of the given seed with this maze's size, settings and search
+  MazeBuilder builder(long seed) {
+    return new MazeBuilder(this.width, this.height, seed, this.horizPref, this.vertPref,
+        this.rowByRow, this.parallel, this.start, this.end, this.search);
+  }
+
+  long getSeed() {
+    return this.seed;
+  }
+
+  //EFFECT: opens the passages of the cheapest spanning tree over the grid's edge weights
+  void cheapestSpanningPath() {
+    this.builder(this.seed).cheapestSpanningPath(this.grid, this.rand);
+  }
+
+  //EFFECT: starts building the next maze in the background, from the next seed, dropping
+  // any build still waiting to start; this maze stays on screen until it is ready
+  void regenerate() {
+    if (this.built != null) {
+      this.built.cancel(false);
+    }
+    this.building = this.builder(this.seeds.nextLong());
+    this.built = BUILDER.submit(this.building);
+  }
+
+  //EFFECT: swaps in the maze built in the background, then solves it again in the current
+  // search, or lets the player start over in it
+  void swapIn(MazeSnapshot next) {
+    this.grid = next.grid;
+    this.index = next.index;
+    this.dynamic = null;
+    this.renderer.show(next.grid);
+    if (this.heatMap) {
+      this.renderer.showHeat(next.index);
+    }
+    this.seed = next.seed;
+    this.rand = new SplittableRandom(next.seed);
+    this.building = null;
+    this.built = null;
+    this.path = next.found.path;
+    this.playerNodesSeen.clear();
+    this.play(this.search.name(), next.found.trace(this.width), this.path);
+    if (this.player || this.playerToggleAnimate) {
+      this.playerToggleAnimate = false;
+      this.onKeyEvent("p");
     }
-    workList.sort(new WeightSort());
-    while (nuf.size() > 1) {
-      Edge next = workList.remove(0);
-      if (next.repsSame(nuf)) {
-        // already discarded by using .remove(0);
+    else {
+      this.overlay = this.search.name();
+      this.toggleAnimate = true;
+    }
+  }
+
+  //EFFECT: swaps in the maze being built once it is ready, or right away when told to wait
+  void finishBuild(boolean wait) {
+    if (this.built != null && (wait || this.built.isDone())) {
+      try {
+        this.swapIn(this.built.get());
       }
-      else {
-        edgesInTree.add(next);
-        next.unionToFrom(nuf);
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      catch (ExecutionException e) {
+        throw new IllegalStateException("Could not build the next maze", e.getCause());
       }
     }
-    return edgesInTree;
   }
 
-  //EFFECT: sets this' path to the path from given beginning and end
-  void pathFromTo(Node start, Node end, boolean depthFirstSearch) {
-    ArrayList<Node> seen = new ArrayList<Node>();
-    ArrayList<Node> workList = new ArrayList<Node>();
-    HashMap<Node, Node> path = new HashMap<Node, Node>();
-    workList.add(start);
-    path.put(start, start);
-    while (!workList.isEmpty()) {
-      Node next = workList.remove(0);
-      if (next == end) {
-        ArrayList<Node> done = new ArrayList<Node>();
-        this.path = done;
-        this.nodesSeen = seen;
-        this.drawTick = 0;
-        this.findTick = seen.size() - 1;
-        return;
-      }
-      else if (seen.contains(next)) {
-        // already removed, nothing else to do
+  //EFFECT: sets this' path to the path from given beginning and end, found by the given search,
+  // and the cells it explored on the way to animate
+  void pathFromTo(int start, int end, ISearch search) {
+    SearchResult found = MazeMetrics.GLOBAL.search(search, this.grid, start, end);
+    this.path = found.path;
+    this.play(search.name(), found.trace(this.width), this.path);
+  }
+
+  //EFFECT: plays back the given cells seen then the given path from the beginning, recording
+  // them under the given name
+  void play(String name, CellTrace seen, int[] path) {
+    this.recording = new TraceRecording(name, this.width, this.height, this.seed, seen,
+        CellTrace.of(path, this.width));
+    this.animation.start(this.recording.seen, this.recording.path);
+  }
+
+  // the file k saves the last trace of this maze to, and l loads it from
+  Path tracePath() {
+    return Paths.get("maze-" + this.seed + ".trace");
+  }
+
+  //EFFECT: saves the last search or won game played back to the given file, and says so
+  void saveTrace(Path file) {
+    try {
+      this.recording.save(file);
+      this.overlay = "Saved " + file.getFileName();
+    }
+    catch (IOException e) {
+      this.overlay = "Could not save " + file.getFileName();
+    }
+  }
+
+  //EFFECT: plays back the search or won game saved in the given file from the beginning,
+  // without searching again, if it was recorded in a maze of this size and seed
+  void loadTrace(Path file) {
+    try {
+      TraceRecording loaded = TraceRecording.load(file);
+      if (loaded.isOf(this.width, this.height, this.seed)) {
+        this.clearColour();
+        this.player = false;
+        this.playerToggleAnimate = false;
+        this.recording = loaded;
+        this.animation.start(loaded.seen, loaded.path);
+        this.overlay = loaded.name;
+        this.toggleAnimate = true;
       }
       else {
-        next.addConnections(workList, seen, connections, path, depthFirstSearch);
-        seen.add(0, next);
+        this.overlay = file.getFileName() + " is of another maze";
       }
     }
+    catch (IOException e) {
+      this.overlay = "Could not load " + file.getFileName();
+    }
+  }
+
+  // returns the cells from start to end of the last path found, or through the maze as it is
+  // when a region changed since
+  int[] getPath() {
+    if (this.path == null) {
+      this.path = this.pathBetween(this.start, this.end);
+    }
+    return this.path;
+  }
+
+  // the cells along the maze from one given cell to the other, both included, without searching
+  int[] pathBetween(int from, int to) {
+    if (this.index == null) {
+      return this.dynamic.path(from, to);
+    }
+    return this.index.path(from, to);
+  }
+
+  // the number of steps along the maze between the two given cells
+  int distanceBetween(int from, int to) {
+    if (this.index == null) {
+      return this.dynamic.distance(from, to);
+    }
+    return this.index.distance(from, to);
+  }
+
+  // the number of steps from the given cell to the exit, looked up instead of searched
+  int cellsToExit(int cell) {
+    if (this.index == null) {
+      return this.dynamic.distance(cell, this.end);
+    }
+    return this.index.depth(cell);
+  }
+
+  // the cell to move to from the given one on the way to the exit, the exit itself from there
+  int hintFrom(int cell) {
+    if (this.index == null) {
+      return this.dynamic.next(cell, this.end);
+    }
+    return this.index.parent(cell);
   }
 
+  // the tree of the maze from the exit, indexed again if a region changed since it last was
+  TreeIndex index() {
+    if (this.index == null) {
+      this.index = new TreeIndex(this.grid, this.end);
+    }
+    return this.index;
+  }
+
+  // the current maze's link-cut forest, null until a region is generated again
+  DynamicSpanningTree forest() {
+    return this.dynamic;
+  }
+
+  //EFFECT: generates the maze again inside the given rectangle of cells only, with new weights
+  // and the cheapest passages among them that join the maze back into one, leaving the rest of
+  // the maze as it was; the path from start to end is found again through the changed maze
+  // when next needed
+  void regenerateRegion(int x, int y, int width, int height) {
+    if (this.dynamic == null) {
+      this.dynamic = new DynamicSpanningTree(this.grid);
+    }
+    this.index = null;
+    this.dynamic.regenerate(x, y, width, height, this.rand, this.horizPref, this.vertPref);
+    this.path = null;
+  }
+
+  // the first cell of a side of a region around the given cell, with cells REGION_SIZE a
+  // side but no more than the given number, kept inside them
+  static int regionStart(int around, int cells) {
+    return Math.max(0, Math.min(around - REGION_SIZE / 2, cells - REGION_SIZE));
+  }
+
+  // returns the grid this maze is drawn on, for testing
+  Grid getGrid() {
+    return this.grid;
+  }
+
+  //EFFECT: saves this maze's size, start, end and passages to the given file
+  void save(Path file) throws IOException {
+    new MazeFile(this.grid, this.seed, this.start, this.end).save(file);
+  }
+
+  //EFFECT: writes a PNG of this maze and its last path to the given file, without a window
+  void exportPng(File file, int cellSize) throws IOException {
+    new MazeRasterizer(this.grid, cellSize, this.getPath()).writePng(file);
+  }
+
+  // draws the entire maze, repainting only the cells that changed since the last frame
+  //EFFECT: indexes the maze again first if the heat map is on and a region changed since, once
+  // a frame however many regions changed
   WorldImage draw() {
-    WorldImage cols = new EmptyImage();
-    for (ArrayList<Node> nodes : this.nodes) {
-      WorldImage row = new EmptyImage();
-      for (Node n : nodes) {
-        row = new BesideImage(row, n.draw(this.connections));
-      }
-      cols = new AboveImage(cols, row);
+    if (this.heatMap && this.index == null) {
+      this.renderer.showHeat(this.index());
     }
-    return cols;
+    return this.renderer.render();
   }
 
   // must be public, inherited from super class
   public WorldScene makeScene() {
+    long begin = System.nanoTime();
+    long allocated = MazeMetrics.GLOBAL.frameStart();
     WorldScene maze = new WorldScene(this.width * 18, this.height * 18);
     maze.placeImageXY(this.draw(), this.width * 18 / 2, this.height * 18 / 2);
+    String overlayText = this.overlay;
+    if (this.player) {
+      overlayText = this.overlay + ", "
+          + this.cellsToExit(this.grid.index(this.playerX, this.playerY)) + " cells to go";
+    }
     maze.placeImageXY(new TextImage(
-        this.overlay, Color.black), this.width * 8 / 2, this.height * 18 / 20);
+        overlayText, Color.black), this.width * 8 / 2, this.height * 18 / 20);
     if (vertPref) {
       maze.placeImageXY(new TextImage(
           "Vertical Preference", Color.black), this.width * 12, this.height * 18 / 20);
@@ -387,157 +910,225 @@ class Maze extends World {
       maze.placeImageXY(new TextImage(
           "Random preference", Color.black), this.width * 12, this.height * 18 / 20);
     }
+    String seedText = "Seed " + this.seed;
+    if (this.building != null) {
+      seedText = "Building next maze " + this.building.progress() + "%";
+    }
+    maze.placeImageXY(new TextImage(seedText, Color.black),
+        this.width * 18 / 2, this.height * 18 - this.height * 18 / 20);
+    if (this.hud) {
+      String[] lines = this.hudLines();
+      for (int i = 0; i < lines.length; i += 1) {
+        maze.placeImageXY(new TextImage(lines[i], Color.black), this.width * 18 / 2,
+            this.height * 18 / 20 + 16 * (i + 1));
+      }
+    }
+    MazeMetrics.GLOBAL.frameDone(begin, allocated);
     return maze;
   }
 
+  // the HUD's lines: what the last maze generated, search run and frame drawn cost
+  String[] hudLines() {
+    MetricsSnapshot last = MazeMetrics.GLOBAL.snapshot();
+    String[] lines = {"No generation yet", "No search yet", "No frame yet"};
+    if (last.generation != null) {
+      lines[0] = last.generation.toString();
+    }
+    if (last.search != null) {
+      lines[1] = last.search.toString();
+    }
+    if (last.frame != null) {
+      lines[2] = last.frame.toString();
+    }
+    return lines;
+  }
+
   //must be public, inherited from super class
   public void onTick() {
-    if (this.toggleAnimate) {
-      if (this.findTick >= 0) {
-        this.nodesSeen.get(this.findTick).changeColor(Color.CYAN);
-        this.findTick -= 1;
-      }
-      else if (this.drawTick <= this.path.size() - 1) {
-        this.path.get(this.drawTick).changeColor(Color.green);
-        this.drawTick += 1;
-      }
-      else {
+    this.tick(System.nanoTime());
+  }
+
+  //EFFECT: swaps in a finished maze, and plays back the steps of the animation due by the
+  // given time
+  void tick(long now) {
+    this.finishBuild(false);
+    if (this.toggleAnimate || this.playerToggleAnimate) {
+      this.animation.advance(this.grid, now);
+      if (this.animation.isDone()) {
         this.toggleAnimate = false;
-        this.findTick = this.nodesSeen.size() - 1;
-        this.drawTick = 0;
+        this.playerToggleAnimate = false;
       }
     }
+  }
 
-    if (this.playerToggleAnimate) {
-      if (this.playerFindTick <= this.playerNodesSeen.size() - 1) {
-        this.playerNodesSeen.get(this.playerFindTick).changeColor(Color.cyan);
-        this.playerFindTick += 1;
-      }
-      else if (this.drawTick <= this.path.size() - 1) {
-        this.path.get(this.drawTick).changeColor(Color.green);
-        this.drawTick += 1;
-      }
-      else {
-        this.playerToggleAnimate = false;
-        this.playerFindTick = 0;
-        this.drawTick = 0;
-      }
+  //EFFECT: moves the animation to the given step, repainting from the start when going back
+  void seekAnimation(int step) {
+    if (step < this.animation.position()) {
+      this.clearColour();
+      this.animation.rewind();
     }
+    this.animation.seek(this.grid, step);
   }
 
   void clearColour() {
-    for (int h = 0; h < this.nodes.size(); h += 1) {
-      for (int w = 0; w < this.nodes.get(h).size(); w += 1) {
-        this.nodes.get(h).get(w).changeColor(Color.LIGHT_GRAY);
-      }
-    }
-    this.nodes.get(0).get(0).changeColor(Color.green);
-    this.nodes.get(this.height - 1).get(this.width - 1).changeColor(Color.red);
+    this.grid.clearColors();
+    this.grid.paint(this.start, Grid.PATH);
+    this.grid.paint(this.end, Grid.EXIT);
+  }
+
+  //EFFECT: clears the maze and starts animating the given search from start to end
+  void startSearch(ISearch search) {
+    this.clearColour();
+    this.overlay = search.name();
+    this.toggleAnimate = true;
+    this.search = search;
+    this.pathFromTo(this.start, this.end, search);
   }
 
   // must be public, inherited from super class
   public void onKeyEvent(String key) {
     if (key.equals("d")) {
-      this.clearColour();
-      this.overlay = "Depth-first";
-      this.toggleAnimate = true;
-      this.depthFirstSearch = true;
-      this.pathFromTo(start, end, depthFirstSearch);
+      this.startSearch(new DepthFirstSearch());
     }
     if (key.equals("b")) {
-      this.clearColour();
-      this.overlay = "Breadth-first";
-      this.toggleAnimate = true;
-      this.depthFirstSearch = false;
-      this.pathFromTo(start, end, depthFirstSearch);
+      this.startSearch(new BreadthFirstSearch());
+    }
+    if (key.equals("a")) {
+      this.startSearch(new AStarSearch());
+    }
+    if (key.equals("w")) {
+      this.startSearch(new DijkstraSearch());
+    }
+    if (key.equals("t")) {
+      this.startSearch(new BidirectionalSearch());
+    }
+    if (key.equals("f")) {
+      this.startSearch(new DeadEndFillSearch());
     }
     if (key.equals("r")) {
-      for (ArrayList<Node> aln : nodes) {
-        for (Node n : aln) {
-          n.randomizeEdgeWeights(this.horizPref, this.vertPref);
-        }
-      }
-      this.connections = this.cheapestSpanningPath();
-      if (this.player || this.playerToggleAnimate) {
-        this.playerToggleAnimate = false;
-        this.onKeyEvent("p");
-      }
-      else if (this.depthFirstSearch) {
-        this.onKeyEvent("d");
-      }
-      else {
-        this.onKeyEvent("b");
-      }
+      this.regenerate();
+    }
+    if (key.equals("k")) {
+      this.saveTrace(this.tracePath());
+    }
+    if (key.equals("l")) {
+      this.loadTrace(this.tracePath());
+    }
+    if (key.equals("e")) {
+      this.rowByRow = !this.rowByRow;
+      this.parallel = false;
+      this.regenerate();
+    }
+    if (key.equals("g")) {
+      this.parallel = !this.parallel;
+      this.rowByRow = false;
+      this.regenerate();
     }
     if (key.equals("p")) {
       this.clearColour();
-      this.playerX = 0;
-      this.playerY = 0;
+      this.playerX = this.grid.x(this.start);
+      this.playerY = this.grid.y(this.start);
       this.overlay = "Player";
       this.toggleAnimate = false;
       this.player = true;
+      this.playerNodesSeen.clear();
     }
     if (this.player && !this.toggleAnimate) {
-      Node pos = this.nodes.get(this.playerY).get(this.playerX);
+      int pos = this.grid.index(this.playerX, this.playerY);
       if (key.equals("up")) {
-        if (this.playerY > 0 && pos.isValidMove(
-            this.nodes.get(this.playerY - 1).get(this.playerX), this.connections)) {
+        if (this.grid.canMove(pos, Grid.UP)) {
           this.playerY -= 1;
-          pos.changeColor(Color.LIGHT_GRAY);
+          this.grid.paint(pos, Grid.UNSEEN);
         }
       }
       if (key.equals("down")) {
-        if (this.playerY < this.height - 1 && pos.isValidMove(
-            this.nodes.get(this.playerY + 1).get(this.playerX), this.connections)) {
+        if (this.grid.canMove(pos, Grid.DOWN)) {
           this.playerY += 1;
-          pos.changeColor(Color.LIGHT_GRAY);
+          this.grid.paint(pos, Grid.UNSEEN);
         }
       }
       if (key.equals("left")) {
-        if (this.playerX > 0 && pos.isValidMove(
-            this.nodes.get(this.playerY).get(this.playerX - 1), this.connections)) {
+        if (this.grid.canMove(pos, Grid.LEFT)) {
           this.playerX -= 1;
-          pos.changeColor(Color.LIGHT_GRAY);
+          this.grid.paint(pos, Grid.UNSEEN);
         }
       }
       if (key.equals("right")) {
-        if (this.playerX < this.width - 1 && pos.isValidMove(
-            this.nodes.get(this.playerY).get(this.playerX + 1), this.connections)) {
+        if (this.grid.canMove(pos, Grid.RIGHT)) {
           this.playerX += 1;
-          pos.changeColor(Color.LIGHT_GRAY);
+          this.grid.paint(pos, Grid.UNSEEN);
         }
       }
-      this.nodes.get(this.playerY).get(this.playerX).changeColor(Color.green);
+      if (key.equals("o")) {
+        int[] wayOut = this.pathBetween(pos, this.end);
+        for (int i = 1; i < wayOut.length - 1; i += 1) {
+          this.grid.paint(wayOut[i], Grid.SEEN);
+        }
+      }
+      if (key.equals("x")) {
+        this.regenerateRegion(regionStart(this.playerX, this.width),
+            regionStart(this.playerY, this.height), Math.min(REGION_SIZE, this.width),
+            Math.min(REGION_SIZE, this.height));
+      }
+      if (key.equals("n") && pos != this.end) {
+        this.grid.paint(this.hintFrom(pos), Grid.SEEN);
+      }
+      this.grid.paint(this.grid.index(this.playerX, this.playerY), Grid.PATH);
       this.playerNodesSeen.add(pos);
-      if (this.playerY == this.height - 1 && this.playerX == this.width - 1) {
+      if (this.grid.index(this.playerX, this.playerY) == this.end) {
         this.overlay = "You Won!";
         this.player = false;
         this.playerToggleAnimate = true;
+        this.play("Player", this.playerNodesSeen.copy(), this.getPath());
+      }
+    }
+    if (this.toggleAnimate || this.playerToggleAnimate) {
+      if (key.equals("+")) {
+        this.animation.changeSpeed(1);
+      }
+      if (key.equals("-")) {
+        this.animation.changeSpeed(-1);
+      }
+      if (key.equals("]")) {
+        this.animation.skipToEnd(this.grid);
+      }
+      if (key.equals("[")) {
+        this.seekAnimation(0);
+      }
+      if (key.equals(".")) {
+        this.seekAnimation(this.animation.position() + this.animation.length() / 10);
+      }
+      if (key.equals(",")) {
+        this.seekAnimation(this.animation.position() - this.animation.length() / 10);
+      }
+    }
+    if (key.equals("i")) {
+      this.hud = !this.hud;
+      MazeMetrics.GLOBAL.setEnabled(this.hud);
+    }
+    if (key.equals("m")) {
+      this.heatMap = !this.heatMap;
+      if (this.heatMap) {
+        this.renderer.showHeat(this.index());
+      }
+      else {
+        this.renderer.showHeat(null);
       }
     }
     if (key.equals("s")) {
-      this.clearColour();
       this.vertPref = false;
       this.horizPref = false;
-      this.toggleAnimate = true;
-      this.pathFromTo(start, end, depthFirstSearch);
-      this.onKeyEvent("r");
+      this.regenerate();
     }
     if (key.equals("v")) {
-      this.clearColour();
       this.vertPref = true;
       this.horizPref = false;
-      this.toggleAnimate = true;
-      this.pathFromTo(start, end, depthFirstSearch);
-      this.onKeyEvent("r");
+      this.regenerate();
     }
     if (key.equals("h")) {
-      this.clearColour();
       this.vertPref = false;
       this.horizPref = true;
-      this.toggleAnimate = true;
-      this.pathFromTo(start, end, depthFirstSearch);
-      this.onKeyEvent("r");
+      this.regenerate();
     }
   }
 
@@ -547,118 +1138,1301 @@ class Maze extends World {
   }
 }
 
-class WeightSort implements Comparator<Edge> {
-  public int compare(Edge firstEdge, Edge secondEdge) {
-    return firstEdge.compareWeight(secondEdge);
-  }
-}
-
-class NodeUnionFind {
-  private final HashMap<Node, Node> representatives;
+class NodeUnionFind implements AutoCloseable {
+  // representative of each cell, by cell index
+  private final IntStore representatives;
+  // number of cells under each representative, only meaningful for representatives
+  private final IntStore sizes;
+  // number of distinct representatives, kept up to date by union
+  private int components;
 
-  NodeUnionFind() {
-    this.representatives = new HashMap<Node, Node>();
+  // every cell starts as its own representative
+  NodeUnionFind(int cells) {
+    this(cells, new HeapStorage());
   }
 
-  //for testing
-  NodeUnionFind(HashMap<Node, Node> representatives) {
-    this.representatives = representatives;
+  // every cell starts as its own representative, both stores kept in the given storage
+  NodeUnionFind(int cells, IStorage storage) {
+    this.representatives = storage.ints(cells);
+    this.sizes = storage.ints(cells);
+    this.reset();
   }
 
-  //EFFECT: sets the representatives table, all nodes referring to themselves
-  void setRepresentatives(ArrayList<ArrayList<Node>> nodes) {
-    for (int w = 0; w < nodes.size(); w += 1) {
-      for (int h = 0; h < nodes.get(w).size(); h += 1) {
-        Node put = nodes.get(w).get(h);
-        this.representatives.put(put, put);
-      }
+  //EFFECT: makes every cell its own representative again
+  void reset() {
+    int cells = (int) this.representatives.length();
+    for (int cell = 0; cell < cells; cell += 1) {
+      this.representatives.set(cell, cell);
     }
+    this.sizes.fill(1);
+    this.components = cells;
   }
 
-  //EFFECT: unions two node's by setting the first's representative to the second's
-  void union(Node first, Node second) {
-    this.representatives.put(this.find(first), this.find(second));
+  // unions two cells by putting the smaller set under the larger one's representative,
+  // the first's under the second's when they are the same size
+  // returns false if they already had the same representative
+  //EFFECT: merges the sets of the two cells
+  boolean union(int first, int second) {
+    int firstRep = this.find(first);
+    int secondRep = this.find(second);
+    if (firstRep == secondRep) {
+      return false;
+    }
+    if (this.sizes.get(firstRep) > this.sizes.get(secondRep)) {
+      int swap = firstRep;
+      firstRep = secondRep;
+      secondRep = swap;
+    }
+    this.representatives.set(firstRep, secondRep);
+    this.sizes.set(secondRep, this.sizes.get(secondRep) + this.sizes.get(firstRep));
+    this.components -= 1;
+    return true;
   }
 
-  // finds representative of given node by looping through until finds itself
-  Node find(Node node) {
-    if (node == this.representatives.get(node)) {
-      return node;
-    }
-    else {
-      return this.find(this.representatives.get(node));
+  // finds representative of given cell, pointing every other cell on the way at its grandparent
+  //EFFECT: halves the path from the given cell to its representative
+  int find(int cell) {
+    while (cell != this.representatives.get(cell)) {
+      this.representatives.set(cell, this.representatives.get(this.representatives.get(cell)));
+      cell = this.representatives.get(cell);
     }
+    return cell;
   }
 
   int size() {
-    ArrayList<Node> differentRepresentatives = new ArrayList<Node>();
-    for (Node n : this.representatives.keySet()) {
-      if (!differentRepresentatives.contains(this.find(n))) {
-        differentRepresentatives.add(this.find(n));
-      }
-    }
-    return differentRepresentatives.size();
+    return this.components;
+  }
+
+  //EFFECT: closes both stores, the union find must not be used again
+  public void close() {
+    this.representatives.close();
+    this.sizes.close();
   }
 }
 
 class ExamplesMaze {
-  Node mid;
-  Node top;
-  Node right;
-  Node bot;
-  Node left;
-  Edge midright;
-  ArrayList<Edge> edgesEx;
+  Grid grid;
+  int mid;
+  int top;
+  int right;
+  int bot;
+  int left;
+  int midRight;
   Maze maze;
-  ArrayList<Node> col1;
-  ArrayList<Node> col2;
-  ArrayList<ArrayList<Node>> cols;
 
   void initializeVars() {
-    mid = new Node(1, 1);
-    top = new Node(0, 1);
-    right = new Node(1, 2);
-    bot = new Node(2, 1);
-    left = new Node(1, 0);
-    midright = new Edge(mid, right, 5);
-    edgesEx = new ArrayList<Edge>();
+    grid = new Grid(3, 3);
+    mid = grid.index(1, 1);
+    top = grid.index(1, 0);
+    right = grid.index(2, 1);
+    bot = grid.index(1, 2);
+    left = grid.index(0, 1);
+    midRight = mid * 2 + Grid.RIGHT_EDGE;
     maze = new Maze(30, 30);
-    col1 = new ArrayList<Node>();
-    col2 = new ArrayList<Node>();
-    cols = new ArrayList<ArrayList<Node>>();
-    col1.add(left);
-    col1.add(right);
-    col2.add(top);
-    col2.add(bot);
-    cols.add(col1);
-    cols.add(col2);
   }
 
   void testEdges(Tester t) {
     initializeVars();
-    mid.makeEdge(top, 5);
-    mid.addEdge(midright);
-    mid.addEdges(edgesEx);
-    ArrayList<Edge> expected = new ArrayList<Edge>();
-    expected.add(new Edge(mid, top, 5));
-    expected.add(midright);
-    t.checkExpect(edgesEx, expected);
+    t.checkExpect(grid.edgeCount(), 12);
+    t.checkExpect(grid.hasEdge(midRight), true);
+    t.checkExpect(grid.hasEdge(right * 2 + Grid.RIGHT_EDGE), false);
+    t.checkExpect(grid.hasEdge(bot * 2 + Grid.DOWN_EDGE), false);
+    grid.setWeight(midRight, 5);
+    t.checkExpect(grid.weight(midRight), 5);
+    t.checkExpect(grid.isOpen(midRight), false);
+    grid.open(midRight);
+    t.checkExpect(grid.isOpen(midRight), true);
+    grid.closeAll();
+    t.checkExpect(grid.isOpen(midRight), false);
   }
 
   void testAdjacents(Tester t) {
     initializeVars();
-    t.checkExpect(mid.validAdjacent(edgesEx), new ArrayList<Edge>());
-    t.checkExpect(mid.isAdjacent(top, false, 1), false);
+    t.checkExpect(grid.canMove(mid, Grid.RIGHT), false);
+    grid.open(midRight);
+    t.checkExpect(grid.canMove(mid, Grid.RIGHT), true);
+    t.checkExpect(grid.canMove(right, Grid.LEFT), true);
+    t.checkExpect(grid.canMove(right, Grid.RIGHT), false);
+    t.checkExpect(grid.hasNeighbor(top, Grid.UP), false);
+    t.checkExpect(grid.neighbor(mid, Grid.UP), top);
+    t.checkExpect(grid.neighbor(mid, Grid.LEFT), left);
+    t.checkExpect(grid.neighbor(mid, Grid.DOWN), bot);
+    grid.open(top * 2 + Grid.DOWN_EDGE);
+    t.checkExpect(grid.openSides(mid), (1 << Grid.UP) | (1 << Grid.RIGHT));
+    t.checkExpect(grid.openSides(top), 1 << Grid.DOWN);
+    t.checkExpect(grid.openSides(right), 1 << Grid.LEFT);
+    grid.closeAll();
+    t.checkExpect(grid.openSides(mid), 0);
+    t.checkExpect(grid.canMove(mid, Grid.UP), false);
+  }
+
+  void testSpanningPath(Tester t) {
+    Grid square = new Grid(2, 2);
+    square.setWeight(0 * 2 + Grid.RIGHT_EDGE, 1);
+    square.setWeight(0 * 2 + Grid.DOWN_EDGE, 2);
+    square.setWeight(1 * 2 + Grid.DOWN_EDGE, 3);
+    square.setWeight(2 * 2 + Grid.RIGHT_EDGE, 0);
+    new Maze(square);
+    // the three cheapest edges already span the grid, so the dearest is left a wall
+    t.checkExpect(square.isOpen(0 * 2 + Grid.RIGHT_EDGE), true);
+    t.checkExpect(square.isOpen(0 * 2 + Grid.DOWN_EDGE), true);
+    t.checkExpect(square.isOpen(2 * 2 + Grid.RIGHT_EDGE), true);
+    t.checkExpect(square.isOpen(1 * 2 + Grid.DOWN_EDGE), false);
+  }
+
+  void testSortedEdges(Tester t) {
+    initializeVars();
+    for (int edge = 0; edge < 18; edge += 1) {
+      grid.setWeight(edge, edge % 3);
+    }
+    IntStore sorted = grid.sortedEdges(new SplittableRandom(1));
+    t.checkExpect(sorted.length(), 12L);
+    boolean[] found = new boolean[18];
+    for (int i = 0; i < sorted.length(); i += 1) {
+      t.checkExpect(grid.hasEdge(sorted.get(i)), true);
+      t.checkExpect(found[sorted.get(i)], false);
+      found[sorted.get(i)] = true;
+      if (i > 0) {
+        t.checkExpect(grid.weight(sorted.get(i - 1)) <= grid.weight(sorted.get(i)), true);
+      }
+    }
+  }
+
+  void testSearches(Tester t) {
+    Grid square = new Grid(2, 2);
+    square.setWeight(0 * 2 + Grid.RIGHT_EDGE, 1);
+    square.setWeight(0 * 2 + Grid.DOWN_EDGE, 2);
+    square.setWeight(1 * 2 + Grid.DOWN_EDGE, 3);
+    square.setWeight(2 * 2 + Grid.RIGHT_EDGE, 0);
+    Maze small = new Maze(square);
+    // the wall between 1 and 3 means the only way is down then right
+    int[] expected = {0, 2, 3};
+    t.checkExpect(small.getPath(), expected);
+    t.checkExpect(new BreadthFirstSearch().search(square, 0, 3).path, expected);
+    t.checkExpect(new BreadthFirstSearch().search(square, 0, 3).explored(), new int[] {0, 2, 1});
+    t.checkExpect(new DepthFirstSearch().search(square, 0, 3).path, expected);
+    // right is tried first, and is a dead end
+    t.checkExpect(new DepthFirstSearch().search(square, 0, 3).explored(), new int[] {0, 1, 2});
+    t.checkExpect(new AStarSearch().search(square, 0, 3).path, expected);
+    t.checkExpect(new DijkstraSearch().search(square, 0, 3).path, expected);
+    t.checkExpect(new BidirectionalSearch().search(square, 0, 3).path, expected);
+    t.checkExpect(new BidirectionalSearch().search(square, 1, 1).path, new int[] {1});
+    // 1 is the only dead end, and filling it leaves the way
+    t.checkExpect(new DeadEndFillSearch().search(square, 0, 3).path, expected);
+    t.checkExpect(new DeadEndFillSearch().search(square, 0, 3).explored(), new int[] {1});
+    t.checkExpect(new DeadEndFillSearch().search(square, 2, 2).path, new int[] {2});
+    square.closeAll();
+    t.checkExpect(new BreadthFirstSearch().search(square, 0, 3).path, new int[0]);
+    t.checkExpect(new BidirectionalSearch().search(square, 0, 3).path, new int[0]);
+    t.checkExpect(new DeadEndFillSearch().search(square, 0, 3).path, new int[0]);
+  }
+
+  void testSearchesAgree(Tester t) {
+    Grid big = new Grid(40, 25);
+    big.randomizeWeights(new SplittableRandom(7), false, false);
+    int[] expected = new Maze(big).getPath();
+    t.checkExpect(expected[0], 0);
+    t.checkExpect(expected[expected.length - 1], big.cells() - 1);
+    for (int i = 1; i < expected.length; i += 1) {
+      boolean joined = false;
+      for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+        joined = joined || (big.canMove(expected[i - 1], dir)
+            && big.neighbor(expected[i - 1], dir) == expected[i]);
+      }
+      t.checkExpect(joined, true);
+    }
+    t.checkExpect(new DepthFirstSearch().search(big, 0, big.cells() - 1).path, expected);
+    t.checkExpect(new AStarSearch().search(big, 0, big.cells() - 1).path, expected);
+    t.checkExpect(new DijkstraSearch().search(big, 0, big.cells() - 1).path, expected);
+    t.checkExpect(new BidirectionalSearch().search(big, 0, big.cells() - 1).path, expected);
+    t.checkExpect(new DeadEndFillSearch().search(big, 0, big.cells() - 1).path, expected);
+  }
+
+  void testDeadEndFilling(Tester t) {
+    // wider than a long, so dead ends are found across the longs of a row
+    Grid wide = new Grid(150, 23);
+    wide.randomizeWeights(new SplittableRandom(11), false, false);
+    new Maze(wide);
+    int middle = wide.index(75, 11);
+    int[] expected = new BreadthFirstSearch().search(wide, 5, middle).path;
+    SearchResult one = new DeadEndFillSearch(new ForkJoinPool(1), 0, true)
+        .search(wide, 5, middle);
+    t.checkExpect(one.path, expected);
+    // every cell off the way is filled, in a perfect maze
+    t.checkExpect(one.exploredCount(), wide.cells() - expected.length);
+    t.checkExpect(one.frontierPeak(), 0);
+    // bands of one to a few rows leave most dead ends to cross their edges, and fill the same
+    // cells in the same order on any number of threads
+    for (int rows = 1; rows <= 7; rows += 3) {
+      SearchResult banded = new DeadEndFillSearch(new ForkJoinPool(1), rows, true)
+          .search(wide, 5, middle);
+      SearchResult parallel = new DeadEndFillSearch(new ForkJoinPool(4), rows, true)
+          .search(wide, 5, middle);
+      t.checkExpect(banded.path, expected);
+      t.checkExpect(banded.exploredCount(), wide.cells() - expected.length);
+      t.checkExpect(parallel.explored(), banded.explored());
+      t.checkExpect(new DeadEndFillSearch(new ForkJoinPool(4), rows, false)
+          .search(wide, middle, 5).path, new BreadthFirstSearch().search(wide, middle, 5).path);
+    }
+    t.checkExpect(new DeadEndFillSearch(false).search(wide, 0, 0).explored(), new int[0]);
+    // a cell walled off from the rest fills without reaching start or end
+    Grid sealed = new Grid(4, 4);
+    sealed.randomizeWeights(new SplittableRandom(3), false, false);
+    new Maze(sealed);
+    for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+      if (sealed.canMove(15, dir)) {
+        sealed.close(sealed.edgeToward(15, dir));
+      }
+    }
+    t.checkExpect(new DeadEndFillSearch().search(sealed, 0, 15).path, new int[0]);
+    // the game fills with the f key, painting the filled cells as it goes
+    Maze maze = new Maze(wide);
+    maze.onKeyEvent("f");
+    t.checkExpect(maze.getPath(), new BreadthFirstSearch().search(wide, 0, wide.cells() - 1).path);
+    t.checkExpect(MazeBatch.search("fill").name(), "Dead-end filling");
+  }
+
+  void testMetrics(Tester t) {
+    Grid square = new Grid(2, 2);
+    square.open(0 * 2 + Grid.RIGHT_EDGE);
+    square.open(0 * 2 + Grid.DOWN_EDGE);
+    square.open(2 * 2 + Grid.RIGHT_EDGE);
+    // 0's two neighbors wait on the frontier together
+    t.checkExpect(new BreadthFirstSearch().search(square, 0, 3).frontierPeak(), 2);
+    t.checkExpect(new DepthFirstSearch().search(square, 0, 3).frontierPeak(), 2);
+    t.checkExpect(new AStarSearch().search(square, 0, 3).frontierPeak(), 2);
+    t.checkExpect(new BidirectionalSearch().search(square, 1, 1).frontierPeak(), 1);
+    // nothing is kept until the HUD asks for it
+    MazeMetrics.GLOBAL.setEnabled(false);
+    Maze quiet = new Maze(10, 8, 5);
+    t.checkExpect(MazeMetrics.GLOBAL.snapshot().generation, null);
+    t.checkExpect(MazeMetrics.GLOBAL.snapshot().search, null);
+    quiet.onKeyEvent("i");
+    t.checkExpect(MazeMetrics.GLOBAL.isEnabled(), true);
+    t.checkExpect(quiet.hudLines()[0], "No generation yet");
+    Grid grid = new Grid(10, 8);
+    Maze maze = new Maze(grid, 5, true);
+    GenerationMetrics generation = MazeMetrics.GLOBAL.snapshot().generation;
+    t.checkExpect(generation.algorithm, "Kruskal");
+    t.checkExpect(generation.cells, 80);
+    t.checkExpect(generation.edges, 142L);
+    t.checkExpect(generation.unions, 79L);
+    t.checkExpect(generation.unionCalls >= 79 && generation.unionCalls <= 142, true);
+    t.checkExpect(generation.sizeCalls, generation.unionCalls + 1 + 79);
+    // union is called on every sorted edge up to the last one opened, and no further
+    MazeBuilder kruskal = new MazeBuilder(300, 300, 4, false, false, false, false, 0, 89999,
+        new BreadthFirstSearch());
+    Grid large = new Grid(300, 300);
+    GenerationMetrics counted = new GenerationMetrics("Kruskal", large.cells());
+    kruskal.cheapestSpanningPath(large, new SplittableRandom(4), counted);
+    int lastOpened = 0;
+    try (IntStore sorted = large.sortedEdges(new SplittableRandom(4))) {
+      for (int i = 0; i < sorted.length(); i += 1) {
+        if (large.isOpen(sorted.get(i))) {
+          lastOpened = i;
+        }
+      }
+    }
+    t.checkExpect(counted.unionCalls, lastOpened + 1L);
+    t.checkExpect(counted.unions, 89999L);
+    // the loop's checks, a progress check after every union, and the one progress update, when
+    // 65536 sets are left
+    t.checkExpect(counted.sizeCalls, counted.unionCalls + 1 + 89999 + 1);
+    t.checkExpect(generation.weighNanos >= 0 && generation.sortNanos >= 0, true);
+    t.checkExpect(generation.totalNanos >= generation.unionNanos, true);
+    SearchMetrics search = MazeMetrics.GLOBAL.snapshot().search;
+    t.checkExpect(search.search, "Breadth-first");
+    t.checkExpect(search.expanded,
+        new BreadthFirstSearch().search(grid, 0, 79).exploredCount());
+    t.checkExpect(search.pathLength, maze.getPath().length);
+    t.checkExpect(search.frontierPeak >= 1, true);
+    maze.makeScene();
+    maze.makeScene();
+    t.checkExpect(MazeMetrics.GLOBAL.snapshot().frame.nanos > 0, true);
+    t.checkExpect(maze.hudLines()[1].startsWith("Breadth-first "), true);
+    t.checkExpect(maze.hudLines()[2].startsWith("frame "), true);
+    // Eller's has no sort or union phase to report
+    maze.onKeyEvent("e");
+    maze.finishBuild(true);
+    t.checkExpect(MazeMetrics.GLOBAL.snapshot().generation.algorithm, "Eller");
+    t.checkExpect(MazeMetrics.GLOBAL.snapshot().generation.sortNanos, -1L);
+    quiet.onKeyEvent("i");
+    t.checkExpect(MazeMetrics.GLOBAL.isEnabled(), false);
+    t.checkExpect(MazeMetrics.GLOBAL.snapshot().frame, null);
+  }
+
+  void testServer(Tester t) throws IOException {
+    // the tools read a size and seed the same way, each with its own flags and defaults
+    t.checkExpect(MazeOptions.size("--size", "30x20"), new int[] {30, 20});
+    t.checkExpect(MazeOptions.seed("-7"), -7L);
+    t.checkExpect(MazeOptions.atLeast("--threads", "0", 0), 0);
+    t.checkException(new IllegalArgumentException("Bad size 30, expected WIDTHxHEIGHT"), this,
+        "optionSize", "30");
+    t.checkException(new IllegalArgumentException("Bad --size 0"), this, "optionSize", "0x20");
+    t.checkException(new IllegalArgumentException("Bad --port -1"), this, "optionPort", "-1");
+    t.checkException(new IllegalArgumentException("Bad --port 70000"), this, "optionPort",
+        "70000");
+    t.checkException(new IllegalArgumentException("Bad --port 65536"), this, "optionPort",
+        "65536");
+    t.checkExpect(this.optionPort("65535"), 65535);
+    t.checkExpect(MazeOptions.between("--threads", "4", 1, 4), 4);
+    t.checkException(new IllegalArgumentException("Bad seed seven"), this, "optionSeed",
+        "seven");
+    MazeFile maze = MazeServer.generate(6, 5, 3);
+    t.checkExpect(this.isPerfect(maze.grid), true);
+    // a session on its own, the walls of the maze deciding every move as in the game
+    PlayerSession session = new PlayerSession(new ServedMaze(maze));
+    t.checkExpect(session.greeting(), "MAZE 6 5 0 29 3");
+    t.checkExpect(session.reply("move up"), "WALL 0 0");
+    t.checkExpect(session.reply("MOVE NORTH"), "ERR Unknown direction NORTH");
+    t.checkExpect(session.reply("JUMP"), "ERR Unknown command JUMP");
+    int[] path = new BreadthFirstSearch().search(maze.grid, 0, 29).path;
+    for (int i = 1; i < path.length - 1; i += 1) {
+      t.checkExpect(session.reply("MOVE " + this.dirName(maze.grid, path[i - 1], path[i])),
+          "OK " + maze.grid.x(path[i]) + " " + maze.grid.y(path[i]));
+    }
+    t.checkExpect(session.reply("MOVE "
+        + this.dirName(maze.grid, path[path.length - 2], path[path.length - 1])),
+        "WON " + (path.length - 1));
+    t.checkExpect(session.reply("WHERE"), "AT 5 4");
+    t.checkExpect(session.visitedCount(), path.length);
+    t.checkExpect(session.reply("RESET"), "AT 0 0");
+    t.checkExpect(session.visitedCount(), 1);
+    t.checkExpect(session.reply("QUIT"), "BYE");
+    // the same over a connection, while a load test plays other sessions of the same maze
+    MazeServer server = new MazeServer(maze, 0);
+    server.start();
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+            StandardCharsets.US_ASCII));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+            StandardCharsets.US_ASCII), true)) {
+      t.checkExpect(in.readLine(), "MAZE 6 5 0 29 3");
+      MazeLoadClient client = new MazeLoadClient();
+      client.port = server.port();
+      client.sessions = 20;
+      client.moves = 10;
+      client.seed = 5;
+      LoadReport report = client.run();
+      t.checkExpect(report.latencies.length, 200);
+      // too many moves to time is refused before any session opens, not overflowed
+      MazeLoadClient huge = new MazeLoadClient();
+      huge.sessions = 100000;
+      huge.moves = 100000;
+      t.checkException(new IllegalArgumentException("100000 sessions of 100000 moves are "
+          + "10000000000 moves, more than the " + MazeLoadClient.MAX_MOVES + " a run can time"),
+          huge, "run");
+      t.checkExpect(report.latencies[0] <= report.latencies[199], true);
+      t.checkExpect(server.served(), 21L);
+      out.println("MOVE " + this.dirName(maze.grid, path[0], path[1]));
+      t.checkExpect(in.readLine(), "OK " + maze.grid.x(path[1]) + " " + maze.grid.y(path[1]));
+      out.println("QUIT");
+      t.checkExpect(in.readLine(), "BYE");
+      t.checkExpect(in.readLine(), null);
+    }
+    finally {
+      server.close();
+    }
+  }
+
+  // the size, port and seed of the given values, for checking their exceptions
+  int[] optionSize(String value) {
+    return MazeOptions.size("--size", value);
+  }
+
+  int optionPort(String value) {
+    return MazeOptions.port("--port", value);
+  }
+
+  long optionSeed(String value) {
+    return MazeOptions.seed(value);
+  }
+
+  // the name of the direction from the given cell to its given neighbor
+  String dirName(Grid grid, int from, int to) {
+    String[] names = {"UP", "LEFT", "DOWN", "RIGHT"};
+    for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+      if (grid.neighbor(from, dir) == to) {
+        return names[dir];
+      }
+    }
+    return "NONE";
+  }
+
+  void testDirtyCells(Tester t) {
+    initializeVars();
+    // a new grid has never been drawn
+    t.checkExpect(grid.isAllDirty(), true);
+    grid.clearDirty();
+    t.checkExpect(grid.isAllDirty(), false);
+    grid.paint(mid, Grid.UNSEEN);
+    t.checkExpect(grid.dirtyCount(), 0);
+    grid.paint(mid, Grid.SEEN);
+    grid.paint(mid, Grid.PATH);
+    grid.open(midRight);
+    t.checkExpect(grid.dirtyCount(), 1);
+    t.checkExpect(grid.dirtyCell(0), mid);
+    grid.clearDirty();
+    grid.paint(top, Grid.SEEN);
+    t.checkExpect(grid.dirtyCount(), 1);
+    t.checkExpect(grid.dirtyCell(0), top);
+    grid.clearColors();
+    t.checkExpect(grid.isAllDirty(), true);
   }
 
-  void testAddConnections(Tester t) {
+  void testRenderer(Tester t) {
     initializeVars();
-    mid.makeEdge(right, 5);
-    mid.addConnections(new ArrayList<Node>(), 
-        new ArrayList<Node>(), edgesEx, new HashMap<Node, Node>(), false);
-    t.checkExpect(edgesEx, new ArrayList<Node>());
+    MazeRenderer renderer = new MazeRenderer(grid);
+    WorldImage image = renderer.render();
+    t.checkExpect(grid.isAllDirty(), false);
+    grid.paint(mid, Grid.SEEN);
+    // the same cached image is repainted, not rebuilt
+    t.checkExpect(renderer.render() == image, true);
+    t.checkExpect(grid.dirtyCount(), 0);
   }
 
+  void testRasterizer(Tester t) {
+    initializeVars();
+    grid.open(midRight);
+    grid.paint(top, Grid.SEEN);
+    BufferedImage image = new MazeRasterizer(grid, 4, new int[] {mid})
+        .rasterize(ForkJoinPool.commonPool());
+    t.checkExpect(image.getWidth(), 11);
+    t.checkExpect(image.getHeight(), 11);
+    t.checkExpect(image.getRGB(5, 0), Color.CYAN.getRGB());
+    t.checkExpect(image.getRGB(0, 0), Color.LIGHT_GRAY.getRGB());
+    t.checkExpect(image.getRGB(4, 4), Color.green.getRGB());
+    // open to the right of the path cell, walled below and to its left
+    t.checkExpect(image.getRGB(7, 5), Color.green.getRGB());
+    t.checkExpect(image.getRGB(5, 7), Color.black.getRGB());
+    t.checkExpect(image.getRGB(3, 5), Color.black.getRGB());
+    t.checkExpect(image.getRGB(7, 7), Color.black.getRGB());
+  }
+
+  void testMazeFile(Tester t) throws IOException {
+    Grid big = new Grid(70, 9);
+    big.randomizeWeights(new SplittableRandom(3), false, false);
+    Maze generated = new Maze(big);
+    Path file = Files.createTempFile("maze", ".bin");
+    generated.save(file);
+    t.checkExpect(Files.size(file), (long) MazeFile.HEADER_BYTES + 2 * 9 * 2 * 8);
+    MazeFile loaded = MazeFile.load(file);
+    t.checkExpect(loaded.grid.width, 70);
+    t.checkExpect(loaded.grid.height, 9);
+    t.checkExpect(loaded.start, 0);
+    t.checkExpect(loaded.end, 70 * 9 - 1);
+    for (int edge = 0; edge < big.cells() * 2; edge += 1) {
+      t.checkExpect(loaded.grid.isOpen(edge), big.isOpen(edge));
+    }
+    for (int cell = 0; cell < big.cells(); cell += 1) {
+      t.checkExpect(loaded.grid.openSides(cell), big.openSides(cell));
+    }
+    // a maze built from the file keeps its passages, so it finds the same path
+    t.checkExpect(new Maze(loaded).getPath(), generated.getPath());
+    Files.write(file, new byte[MazeFile.HEADER_BYTES]);
+    String message = "";
+    try {
+      MazeFile.load(file);
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "Not a maze file: " + file);
+    // a start or end off the maze is refused along with the rest of the header
+    Files.write(file, this.mazeHeader(70, 9, 0, 70 * 9, MazeFile.fileBytes(70, 9)));
+    t.checkException(new IOException("Bad start or end 0, 630: " + file), this, "loadMazeFile",
+        file);
+    Files.write(file, this.mazeHeader(70, 9, -1, 5, MazeFile.fileBytes(70, 9)));
+    t.checkException(new IOException("Bad start or end -1, 5: " + file), this, "loadMazeFile",
+        file);
+    // a header claiming the most cells a grid can have, but nothing after it, is refused
+    // before the grid is made
+    Files.write(file, this.mazeHeader(1 << 15, 1 << 15, 0, 1, MazeFile.HEADER_BYTES));
+    t.checkException(new IOException("Truncated maze file: " + file), this, "loadMazeFile",
+        file);
+    Files.delete(file);
+  }
+
+  // a maze file's header of the given size, start and end, padded with zeros to the given bytes
+  byte[] mazeHeader(int width, int height, int start, int end, long bytes) {
+    ByteBuffer header = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MazeFile.MAGIC);
+    header.putInt(MazeFile.VERSION);
+    header.putInt(width);
+    header.putInt(height);
+    header.putLong(1);
+    header.putInt(start);
+    header.putInt(end);
+    return header.array();
+  }
+
+  // the maze saved in the given file, for checking load's exceptions
+  MazeFile loadMazeFile(Path file) throws IOException {
+    return MazeFile.load(file);
+  }
+
+  void testSeeds(Tester t) {
+    Maze first = new Maze(25, 15, 11);
+    Maze second = new Maze(25, 15, 11);
+    t.checkExpect(first.getSeed(), 11L);
+    t.checkExpect(first.getPath(), second.getPath());
+    // regenerating draws the next seed from the first, so it is reproducible too
+    first.onKeyEvent("r");
+    second.onKeyEvent("r");
+    first.finishBuild(true);
+    second.finishBuild(true);
+    t.checkExpect(first.getSeed(), second.getSeed());
+    t.checkExpect(first.getPath(), second.getPath());
+    t.checkExpect(first.getSeed() == 11L, false);
+  }
+
+  void testRegenerate(Tester t) {
+    Maze maze = new Maze(30, 20, 3);
+    Grid before = maze.getGrid();
+    maze.onKeyEvent("r");
+    // the old maze stays until the new one is swapped in
+    t.checkExpect(maze.getSeed(), 3L);
+    t.checkExpect(maze.getGrid() == before, true);
+    maze.onKeyEvent("right");
+    maze.finishBuild(true);
+    long next = new SplittableRandom(3).nextLong();
+    t.checkExpect(maze.getSeed(), next);
+    t.checkExpect(maze.getGrid() == before, false);
+    t.checkExpect(this.isPerfect(maze.getGrid()), true);
+    // built in the background, it is the same maze the seed makes right away
+    t.checkExpect(maze.getPath(), new Maze(30, 20, next).getPath());
+    // nothing to swap in once it is done
+    maze.finishBuild(true);
+    t.checkExpect(maze.getSeed(), next);
+    maze.onKeyEvent("v");
+    maze.finishBuild(true);
+    t.checkExpect(this.isPerfect(maze.getGrid()), true);
+  }
+
+  void testAnimation(Tester t) {
+    Grid grid = new Grid(10, 10);
+    TraceAnimation animation = new TraceAnimation();
+    animation.start(CellTrace.of(new int[] {0, 1, 2, 3, 4, 5, 6, 7}, 10),
+        CellTrace.of(new int[] {9, 8}, 10));
+    t.checkExpect(animation.length(), 10);
+    t.checkExpect(animation.stepsPerSecond(), 100L);
+    // the first frame starts the clock and always paints a step
+    t.checkExpect(animation.advance(grid, 1000), 1);
+    t.checkExpect(grid.color(0), Grid.SEEN);
+    t.checkExpect(grid.color(1), Grid.UNSEEN);
+    // 100 steps per second makes 5 due 50 ms later
+    t.checkExpect(animation.advance(grid, 1000 + 50_000_000L), 4);
+    t.checkExpect(animation.position(), 5);
+    animation.changeSpeed(-1);
+    t.checkExpect(animation.stepsPerSecond(), 50L);
+    animation.advance(grid, 0);
+    t.checkExpect(animation.position(), 6);
+    animation.skipToEnd(grid);
+    t.checkExpect(animation.isDone(), true);
+    t.checkExpect(grid.color(9), Grid.PATH);
+    t.checkExpect(grid.color(7), Grid.SEEN);
+    t.checkExpect(animation.advance(grid, 5_000_000_000L), 0);
+    // long traces play back in about NORMAL_SECONDS, at the speed last set
+    animation.start(CellTrace.of(new int[250000], 10), new CellTrace(10));
+    t.checkExpect(animation.stepsPerSecond(), 25000L / 2);
+    CellTrace trace = new CellTrace(10);
+    for (int cell = 0; cell < 40; cell += 1) {
+      trace.add(cell * 3);
+    }
+    t.checkExpect(trace.size(), 40);
+    t.checkExpect(trace.get(39), 117);
+    t.checkExpect(trace.toArray().length, 40);
+    trace.clear();
+    t.checkExpect(trace.size(), 0);
+  }
+
+  void testCellTrace(Tester t) throws IOException {
+    // moves to a neighbor, a diagonal, two over or nowhere take a nibble each
+    CellTrace near = CellTrace.of(new int[] {55, 45, 44, 54, 55, 44, 46, 66, 66}, 10);
+    t.checkExpect(near.toArray(), new int[] {55, 45, 44, 54, 55, 44, 46, 66, 66});
+    t.checkExpect(near.stepBytes(), 4);
+    // anything else is escaped, far or backwards
+    int[] far = {0, 1000000, 3, 999999999, 7, -5 + 12, 1 << 29};
+    t.checkExpect(CellTrace.of(far, 10).toArray(), far);
+    // any step reads back from the keyframe before it
+    CellTrace walk = new CellTrace(100);
+    SplittableRandom rand = new SplittableRandom(2);
+    int[] cells = new int[3 * CellTrace.KEYFRAME_STEPS + 5];
+    for (int i = 0; i < cells.length; i += 1) {
+      if (i > 0 && rand.nextInt(10) > 0) {
+        cells[i] = Math.max(0, cells[i - 1] + new int[] {-100, -1, 100, 1}[rand.nextInt(4)]);
+      }
+      else {
+        cells[i] = rand.nextInt(10000);
+      }
+      walk.add(cells[i]);
+    }
+    t.checkExpect(walk.toArray(), cells);
+    t.checkExpect(walk.get(2 * CellTrace.KEYFRAME_STEPS), cells[2 * CellTrace.KEYFRAME_STEPS]);
+    t.checkExpect(walk.get(cells.length - 1), cells[cells.length - 1]);
+    TraceCursor cursor = walk.cursor(CellTrace.KEYFRAME_STEPS - 1);
+    t.checkExpect(cursor.next(), cells[CellTrace.KEYFRAME_STEPS - 1]);
+    t.checkExpect(cursor.next(), cells[CellTrace.KEYFRAME_STEPS]);
+    t.checkExpect(cursor.next(), cells[CellTrace.KEYFRAME_STEPS + 1]);
+    t.checkException(new IndexOutOfBoundsException("Step 12293 of a trace of 12293"), walk,
+        "get", cells.length);
+    // a copy stays as it was
+    CellTrace copy = walk.copy();
+    walk.clear();
+    walk.add(4);
+    t.checkExpect(copy.toArray(), cells);
+    t.checkExpect(walk.toArray(), new int[] {4});
+    // a breadth-first search's order jumps between the ends of its frontier, but still keeps
+    // to well under half an int a cell
+    Grid grid = new Grid(200, 150);
+    grid.randomizeWeights(new SplittableRandom(9), false, false);
+    new Maze(grid);
+    SearchResult found = new BreadthFirstSearch().search(grid, 0, grid.cells() - 1);
+    CellTrace explored = found.trace(200);
+    t.checkExpect(explored.toArray(), found.explored());
+    t.checkExpect(explored.stepBytes() * 8L < 12L * explored.size(), true);
+    // saved and loaded, every step is checked against the maze
+    Path file = Files.createTempFile("maze", ".trace");
+    TraceRecording recording = new TraceRecording("Breadth-first", 200, 150, 9, explored,
+        CellTrace.of(found.path, 200));
+    recording.save(file);
+    TraceRecording loaded = TraceRecording.load(file);
+    t.checkExpect(loaded.name, "Breadth-first");
+    t.checkExpect(loaded.isOf(200, 150, 9), true);
+    t.checkExpect(loaded.seen.toArray(), found.explored());
+    t.checkExpect(loaded.path.toArray(), found.path);
+    new TraceRecording("Far", 2, 2, 9, CellTrace.of(far, 10), new CellTrace(2)).save(file);
+    t.checkException(new IOException("Bad trace: Step 1 is outside the maze"), this,
+        "loadRecording", file);
+    Files.write(file, new byte[] {1, 2, 3});
+    t.checkException(new IOException("Not a trace file: " + file), this, "loadRecording",
+        file);
+    Files.delete(file);
+  }
+
+  void testAnimationKeys(Tester t) throws IOException {
+    Maze maze = new Maze(30, 20, 1);
+    int[] path = maze.getPath();
+    maze.onKeyEvent("]");
+    for (int i = 0; i < path.length; i += 1) {
+      t.checkExpect(maze.getGrid().color(path[i]), Grid.PATH);
+    }
+    maze.tick(0);
+    maze.onKeyEvent("p");
+    t.checkExpect(maze.getGrid().color(path[1]), Grid.UNSEEN);
+    // a new search animates again, going back repaints from the start
+    maze.onKeyEvent("b");
+    maze.onKeyEvent(".");
+    maze.onKeyEvent(".");
+    maze.onKeyEvent(",");
+    t.checkExpect(maze.getGrid().color(maze.getGrid().index(0, 0)), Grid.SEEN);
+    maze.onKeyEvent("[");
+    t.checkExpect(maze.getGrid().color(maze.getGrid().index(0, 0)), Grid.PATH);
+    // the search played back is saved, and plays back again without searching
+    Path file = Files.createTempFile("maze", ".trace");
+    maze.saveTrace(file);
+    maze.onKeyEvent("p");
+    t.checkExpect(maze.getGrid().color(path[1]), Grid.UNSEEN);
+    maze.loadTrace(file);
+    maze.onKeyEvent("]");
+    for (int i = 0; i < path.length; i += 1) {
+      t.checkExpect(maze.getGrid().color(path[i]), Grid.PATH);
+    }
+    // but not in another maze
+    Maze other = new Maze(30, 20, 2);
+    int[] otherPath = other.getPath();
+    other.onKeyEvent("p");
+    other.loadTrace(file);
+    other.onKeyEvent("]");
+    t.checkExpect(other.getGrid().color(otherPath[1]), Grid.UNSEEN);
+    Files.delete(file);
+  }
+
+  void testTreeIndex(Tester t) {
+    Maze maze = new Maze(40, 25, 12);
+    Grid grid = maze.getGrid();
+    TreeIndex index = new TreeIndex(grid, 0);
+    t.checkExpect(index.depth(0), 0);
+    t.checkExpect(index.depth(grid.cells() - 1), maze.getPath().length - 1);
+    t.checkExpect(index.path(0, grid.cells() - 1), maze.getPath());
+    SplittableRandom rand = new SplittableRandom(12);
+    for (int query = 0; query < 200; query += 1) {
+      int from = rand.nextInt(grid.cells());
+      int to = rand.nextInt(grid.cells());
+      int[] path = index.path(from, to);
+      // the only path in a tree is the one any search finds
+      t.checkExpect(path, new BreadthFirstSearch().search(grid, from, to).path);
+      t.checkExpect(index.distance(from, to), path.length - 1);
+      t.checkExpect(maze.distanceBetween(from, to), path.length - 1);
+    }
+    t.checkExpect(index.ancestor(grid.cells() - 1, 0), 0);
+    t.checkExpect(index.meet(grid.cells() - 1, grid.cells() - 1), grid.cells() - 1);
+    // a long corridor, deep enough that walking parents one at a time would show
+    Grid corridor = new Grid(5000, 1);
+    for (int cell = 0; cell < 4999; cell += 1) {
+      corridor.open(cell * 2 + Grid.RIGHT_EDGE);
+    }
+    TreeIndex deep = new TreeIndex(corridor, 2500);
+    t.checkExpect(deep.distance(0, 4999), 4999);
+    t.checkExpect(deep.meet(10, 4000), 2500);
+    t.checkExpect(deep.meet(10, 2000), 2000);
+    t.checkExpect(deep.ancestor(4999, 7), 2507);
+    t.checkExpect(deep.path(3, 0), new int[] {3, 2, 1, 0});
+    // the way out is shown from where the player stands
+    maze.onKeyEvent("p");
+    maze.onKeyEvent("o");
+    t.checkExpect(grid.color(maze.getPath()[2]), Grid.SEEN);
+  }
+
+  void testDistanceToExit(Tester t) {
+    Maze maze = new Maze(30, 20, 5);
+    Grid grid = maze.getGrid();
+    int end = grid.cells() - 1;
+    t.checkExpect(maze.cellsToExit(0), maze.getPath().length - 1);
+    t.checkExpect(maze.cellsToExit(end), 0);
+    t.checkExpect(maze.hintFrom(end), end);
+    t.checkExpect(maze.hintFrom(0), maze.getPath()[1]);
+    for (int cell = 0; cell < grid.cells(); cell += 1) {
+      t.checkExpect(maze.cellsToExit(cell), maze.distanceBetween(cell, end));
+      if (cell != end) {
+        // the hint is always a neighbor a step closer to the exit
+        t.checkExpect(maze.cellsToExit(maze.hintFrom(cell)), maze.cellsToExit(cell) - 1);
+        t.checkExpect(maze.distanceBetween(cell, maze.hintFrom(cell)), 1);
+      }
+    }
+    // the hint is shown from where the player stands
+    maze.onKeyEvent("p");
+    maze.onKeyEvent("n");
+    t.checkExpect(grid.color(maze.getPath()[1]), Grid.SEEN);
+    maze.onKeyEvent("m");
+    maze.onKeyEvent("m");
+    t.checkExpect(grid.isAllDirty(), true);
+    // uncolored cells get warmer toward the exit, colored ones keep their color
+    MazeRenderer renderer = new MazeRenderer(grid);
+    TreeIndex heat = new TreeIndex(grid, end);
+    renderer.showHeat(heat);
+    int farthest = 0;
+    for (int cell = 0; cell < grid.cells(); cell += 1) {
+      if (heat.depth(cell) > heat.depth(farthest)) {
+        farthest = cell;
+      }
+    }
+    t.checkExpect(heat.deepest(), heat.depth(farthest));
+    t.checkExpect(renderer.cellColor(farthest), MazeRenderer.HEAT[MazeRenderer.HEAT.length - 1]);
+    t.checkExpect(renderer.cellColor(end), Grid.PALETTE[Grid.EXIT]);
+    t.checkExpect(renderer.cellColor(0), Grid.PALETTE[Grid.PATH]);
+    renderer.showHeat(null);
+    t.checkExpect(renderer.cellColor(farthest), Grid.PALETTE[grid.color(farthest)]);
+  }
+
+  void testChunkedMaze(Tester t) {
+    ChunkedMaze maze = new ChunkedMaze(7, 8, ChunkedMaze.chunkBytes(8) * 20);
+    t.checkExpect(maze.capacity(), 20);
+    // four by four chunks hang together as one perfect maze, doors agreeing from both sides
+    Grid region = new Grid(32, 32);
+    for (int y = 0; y < 32; y += 1) {
+      for (int x = 0; x < 32; x += 1) {
+        t.checkExpect(maze.canMove(x, y, Grid.RIGHT), maze.canMove(x + 1, y, Grid.LEFT));
+        t.checkExpect(maze.canMove(x, y, Grid.DOWN), maze.canMove(x, y + 1, Grid.UP));
+        if (x < 31 && maze.canMove(x, y, Grid.RIGHT)) {
+          region.open(region.index(x, y) * 2 + Grid.RIGHT_EDGE);
+        }
+        if (y < 31 && maze.canMove(x, y, Grid.DOWN)) {
+          region.open(region.index(x, y) * 2 + Grid.DOWN_EDGE);
+        }
+      }
+    }
+    t.checkExpect(this.isPerfect(region), true);
+    t.checkExpect(maze.canMove(0, 5, Grid.LEFT), false);
+    t.checkExpect(maze.canMove(5, 0, Grid.UP), false);
+    t.checkExpect(maze.doorSide(0, 0), -1);
+    t.checkExpect(maze.doorSide(3, 0), Grid.LEFT);
+    t.checkExpect(maze.doorSide(0, 3), Grid.UP);
+    // a chunk is the same wherever and whenever it is generated
+    MazeChunk again = new ChunkedMaze(7, 8, ChunkedMaze.chunkBytes(8)).generate(3, 2);
+    for (int cell = 0; cell < 64; cell += 1) {
+      t.checkExpect(again.grid.openSides(cell), maze.chunk(3, 2).grid.openSides(cell));
+    }
+    // the least recently used chunk goes once the cache is full
+    ChunkedMaze small = new ChunkedMaze(7, 8, ChunkedMaze.chunkBytes(8) * 3);
+    small.chunk(0, 0);
+    small.chunk(1, 0);
+    small.chunk(2, 0);
+    small.chunk(0, 0);
+    t.checkExpect(small.generated(), 3L);
+    small.chunk(3, 0);
+    t.checkExpect(small.cached(), 3);
+    small.chunk(0, 0);
+    t.checkExpect(small.generated(), 4L);
+    small.chunk(1, 0);
+    t.checkExpect(small.generated(), 5L);
+    t.checkException(new IllegalArgumentException("A 16x16 window shows up to 9 chunks, but "
+        + "only 3 fit in memory"), this, "chunkedWorld", small, 16);
+    // the player only moves through open passages, and only the chunks in view are made
+    ChunkedMazeWorld world = new ChunkedMazeWorld(maze, 16, 16);
+    for (int move = 0; move < 200; move += 1) {
+      long x = world.getPlayerX();
+      long y = world.getPlayerY();
+      boolean open = maze.canMove(x, y, Grid.DOWN);
+      world.onKeyEvent("down");
+      if (open) {
+        t.checkExpect(world.getPlayerY(), y + 1);
+      }
+      else {
+        t.checkExpect(world.getPlayerY(), y);
+        world.onKeyEvent("right");
+      }
+    }
+    world.makeScene();
+    t.checkExpect(maze.cached() <= 20, true);
+  }
+
+  void testBatch(Tester t) throws IOException {
+    MazeBatch batch = MazeBatch.parse(new String[] {"--size", "12x8", "--count", "6",
+        "--seed", "4", "--bias", "vertical", "--algorithm", "eller", "--search", "astar",
+        "--threads", "2"});
+    t.checkExpect(batch.width, 12);
+    t.checkExpect(batch.height, 8);
+    t.checkExpect(batch.vertPref, true);
+    t.checkExpect(batch.rowByRow, true);
+    t.checkExpect(batch.search.name(), "A*");
+    t.checkExpect(MazeBatch.parse(new String[0]).count, 100);
+    t.checkException(new IllegalArgumentException("Unknown bias diagonal"), this,
+        "parseBatch", "--bias", "diagonal");
+    t.checkException(new IllegalArgumentException("Bad --count 0"), this,
+        "parseBatch", "--count", "0");
+    t.checkException(new IllegalArgumentException("--png needs --out to know where to write"),
+        this, "parseBatch", "--png", "3");
+    // every maze is saved under its number, the same maze its seed makes in the game
+    Path out = Files.createTempDirectory("mazes");
+    batch.out = out;
+    ExecutorService pool = batch.executor();
+    BatchReport report = batch.run(pool, new PrintStream(new ByteArrayOutputStream()));
+    pool.shutdown();
+    t.checkExpect(report.count, 6);
+    t.checkExpect(report.generateNanos.length, 6);
+    t.checkExpect(report.stats.cells, 6 * 96L);
+    t.checkExpect(report.stats.passages(), 6 * 95L);
+    MazeFile saved = MazeFile.load(out.resolve("maze-00005.maze"));
+    SplittableRandom seeds = new SplittableRandom(4);
+    for (int i = 0; i < 5; i += 1) {
+      seeds.nextLong();
+    }
+    t.checkExpect(saved.seed, seeds.nextLong());
+    t.checkExpect(this.isPerfect(saved.grid), true);
+    t.checkExpect(BatchReport.percentile(new long[] {1, 2, 3, 4}, 50), 2L);
+    t.checkExpect(BatchReport.percentile(new long[] {1, 2, 3, 4}, 99), 4L);
+    t.checkExpect(BatchReport.percentile(new long[] {7}, 1), 7L);
+  }
+
+  void testStorage(Tester t) throws IOException {
+    // segments of 256 bytes, so every store of a 40x30 maze crosses several
+    Path scratch = Files.createTempDirectory("stores");
+    IStorage mapped = new MappedStorage(scratch, 8);
+    LongStore longs = mapped.longs(100);
+    longs.set(31, -1L);
+    longs.set(32, 5L);
+    t.checkExpect(longs.get(31), -1L);
+    t.checkExpect(longs.get(32), 5L);
+    t.checkExpect(longs.get(99), 0L);
+    // bits either side of the segment boundary between longs 63 and 64
+    longs.setBit(64 * 63 + 63);
+    longs.setBit(64 * 64);
+    t.checkExpect(longs.bit(64 * 63 + 63), true);
+    t.checkExpect(longs.bit(64 * 64), true);
+    t.checkExpect(longs.bit(64 * 64 + 1), false);
+    t.checkExpect(longs.bit(64 * 32), true);
+    t.checkExpect(longs.bit(64 * 32 + 1), false);
+    t.checkExpect(longs.get(63), Long.MIN_VALUE);
+    t.checkExpect(longs.get(64), 1L);
+    IntStore ints = mapped.ints(200);
+    ints.fill(7);
+    t.checkExpect(ints.toArray(3), new int[] {7, 7, 7});
+    t.checkExpect(ints.get(199), 7);
+    // the same seed makes the same maze, and the same answers, wherever it is kept
+    Grid onHeap = new Grid(40, 30);
+    Grid offHeap = new Grid(40, 30, mapped);
+    t.checkExpect(offHeap.storage(), mapped);
+    MazeBuilder builder = new MazeBuilder(40, 30, 9, false, false, false, false, 0, 1199,
+        new BreadthFirstSearch());
+    builder.generate(onHeap, new SplittableRandom(9));
+    builder.generate(offHeap, new SplittableRandom(9));
+    for (int edge = 0; edge < onHeap.cells() * 2; edge += 1) {
+      t.checkExpect(offHeap.isOpen(edge), onHeap.isOpen(edge));
+    }
+    t.checkExpect(this.isPerfect(offHeap), true);
+    for (int i = 0; i < 5; i += 1) {
+      ISearch search = MazeBatch.search(new String[] {"bfs", "dfs", "astar", "dijkstra",
+          "bidirectional"}[i]);
+      t.checkExpect(search.search(offHeap, 0, 1199).path, search.search(onHeap, 0, 1199).path);
+      t.checkExpect(search.search(offHeap, 0, 1199).explored(),
+          search.search(onHeap, 0, 1199).explored());
+    }
+    t.checkExpect(new TreeIndex(offHeap, 1199).distance(0, 639),
+        new TreeIndex(onHeap, 1199).distance(0, 639));
+    t.checkExpect(new MazeAnalyzer().analyze(offHeap, 0, 1199).toString(),
+        new MazeAnalyzer().analyze(onHeap, 0, 1199).toString());
+    // a saved maze loads into mapped files as it does onto the heap
+    Path file = Files.createTempFile("maze", ".maze");
+    new MazeFile(onHeap, 9, 0, 1199).save(file);
+    Grid loaded = MazeFile.load(file, mapped).grid;
+    for (int edge = 0; edge < onHeap.cells() * 2; edge += 1) {
+      t.checkExpect(loaded.isOpen(edge), onHeap.isOpen(edge));
+    }
+    Files.delete(file);
+    // every store's file went as soon as it was mapped
+    Files.delete(scratch);
+    // closing gives a mapped store's pages back there and then, so a maze, its generation,
+    // searches and stats leave nothing mapped once each is closed (seen where the OS lists what
+    // a process has mapped)
+    Path own = Files.createTempDirectory("stores");
+    IStorage closing = new MappedStorage(own, 8);
+    Path maps = Paths.get("/proc/self/maps");
+    if (MappedStorage.unmapsAtOnce() && Files.exists(maps)) {
+      try (Grid grid = new Grid(40, 30, closing)) {
+        builder.generate(grid, new SplittableRandom(9));
+        String[] names = {"bfs", "dfs", "astar", "dijkstra", "bidirectional", "fill"};
+        for (String name : names) {
+          try (SearchResult found = MazeBatch.search(name).search(grid, 0, 1199)) {
+            t.checkExpect(found.path, new BreadthFirstSearch().search(onHeap, 0, 1199).path);
+          }
+        }
+        try (MazeAnalyzer analyzer = new MazeAnalyzer()) {
+          t.checkExpect(analyzer.analyze(grid, 0, 1199).cells, 1200L);
+        }
+        // only the grid's own stores are left, until it is closed too
+        t.checkExpect(this.mappedFiles(maps, own) > 0, true);
+      }
+      t.checkExpect(this.mappedFiles(maps, own), 0);
+    }
+    Files.delete(own);
+    t.checkExpect(MazeBatch.parse(new String[] {"--storage", "heap"}).storage
+        instanceof HeapStorage, true);
+    t.checkExpect(MazeBatch.parse(new String[] {"--storage", "auto"}).storage, null);
+    t.checkExpect(MazeBatch.parse(new String[0]).storage(2) instanceof HeapStorage, true);
+    t.checkException(new IllegalArgumentException("Unknown storage disk"), this,
+        "parseBatch", "--storage", "disk");
+    t.checkException(new IllegalArgumentException("A 65536x65536 maze has more than "
+        + Grid.MAX_CELLS + " cells"), this, "parseBatch", "--size", "65536x65536");
+    t.checkException(new IllegalArgumentException("Boruvka's algorithm keeps 21 bytes a cell "
+        + "on the heap, more than it has for a 32768x32768 maze, use kruskal or eller"), this,
+        "parseBatch", "--algorithm", "boruvka", "--size", "32768x32768");
+    t.checkExpect(MazeBatch.parse(new String[] {"--algorithm", "boruvka", "--size",
+        "1000x1000"}).parallel, true);
+    t.checkException(new IllegalArgumentException("3000000000 elements do not fit in one "
+        + "array, keep the maze in a MappedStorage instead"), new HeapStorage(), "ints",
+        3000000000L);
+  }
+
+  // the number of regions mapped from files in the given directory, in the given list of what
+  // a process has mapped
+  int mappedFiles(Path maps, Path directory) throws IOException {
+    int count = 0;
+    for (String line : Files.readAllLines(maps)) {
+      if (line.contains(directory.toString() + File.separator)) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  // the batch of the given options, for checking its parsing's exceptions
+  MazeBatch parseBatch(String option, String value) {
+    return MazeBatch.parse(new String[] {option, value});
+  }
+
+  MazeBatch parseBatch(String option, String value, String other, String otherValue) {
+    return MazeBatch.parse(new String[] {option, value, other, otherValue});
+  }
+
+  // the recording saved in the given file, for checking load's exceptions
+  TraceRecording loadRecording(Path file) throws IOException {
+    return TraceRecording.load(file);
+  }
+
+  // an endless maze world of the given maze, for checking its constructor's exception
+  ChunkedMazeWorld chunkedWorld(ChunkedMaze maze, int view) {
+    return new ChunkedMazeWorld(maze, view, view);
+  }
+
+  // whether the given grid's passages join every cell without a loop
+  boolean isPerfect(Grid grid) {
+    NodeUnionFind nuf = new NodeUnionFind(grid.cells());
+    int passages = 0;
+    for (int edge = 0; edge < grid.cells() * 2; edge += 1) {
+      if (grid.hasEdge(edge) && grid.isOpen(edge)) {
+        passages += 1;
+        nuf.union(grid.edgeFrom(edge), grid.edgeTo(edge));
+      }
+    }
+    return passages == grid.cells() - 1 && nuf.size() == 1;
+  }
+
+  // Eller's algorithm gives about the passages across for every passage down Kruskal's does,
+  // with no preference and with each one
+  void testEllerBias(Tester t) {
+    MazeAnalyzer analyzer = new MazeAnalyzer();
+    boolean[][] prefs = {{false, false}, {true, false}, {false, true}};
+    for (boolean[] pref : prefs) {
+      double[] ratios = new double[2];
+      for (int rowByRow = 0; rowByRow < 2; rowByRow += 1) {
+        Grid grid = new Grid(200, 200);
+        new MazeBuilder(200, 200, 4, pref[0], pref[1], rowByRow == 1, false, 0, 39999,
+            new BreadthFirstSearch()).generate(grid, new SplittableRandom(4));
+        ratios[rowByRow] = analyzer.analyze(grid, 0, 39999).horizontalRatio();
+      }
+      t.checkExpect(Math.abs(ratios[1] / ratios[0] - 1) < 0.1, true);
+    }
+  }
+
+  void testEller(Tester t) throws IOException {
+    Grid one = new Grid(70, 40);
+    Grid other = new Grid(70, 40);
+    new EllerGenerator(70, 40, false, false).generate(new SplittableRandom(5), new GridRows(one));
+    new EllerGenerator(70, 40, false, false).generate(new SplittableRandom(5), new GridRows(other));
+    t.checkExpect(this.isPerfect(one), true);
+    for (int edge = 0; edge < one.cells() * 2; edge += 1) {
+      t.checkExpect(one.isOpen(edge), other.isOpen(edge));
+    }
+    Grid thin = new Grid(1, 5);
+    new EllerGenerator(1, 5, false, false).generate(new SplittableRandom(5), new GridRows(thin));
+    t.checkExpect(this.isPerfect(thin), true);
+    Grid flat = new Grid(5, 1);
+    new EllerGenerator(5, 1, false, false).generate(new SplittableRandom(5), new GridRows(flat));
+    t.checkExpect(this.isPerfect(flat), true);
+    // a preference moves passages the way it does under Kruskal (testEllerBias measures how far)
+    RowStats horiz = new RowStats();
+    RowStats vert = new RowStats();
+    new EllerGenerator(100, 300, true, false).generate(new SplittableRandom(5), horiz);
+    new EllerGenerator(100, 300, false, true).generate(new SplittableRandom(5), vert);
+    t.checkExpect(horiz.stats.cells, 30000L);
+    t.checkExpect(horiz.stats.passages(), 29999L);
+    t.checkExpect(vert.stats.passages(), 29999L);
+    Grid horizGrid = new Grid(100, 300);
+    new EllerGenerator(100, 300, true, false)
+        .generate(new SplittableRandom(5), new GridRows(horizGrid));
+    int rights = 0;
+    for (int cell = 0; cell < horizGrid.cells(); cell += 1) {
+      if (horizGrid.canMove(cell, Grid.RIGHT)) {
+        rights += 1;
+      }
+    }
+    t.checkExpect(rights > horizGrid.cells() / 2, true);
+    // streaming straight to a file gives the maze the grid got
+    Path file = Files.createTempFile("maze", ".bin");
+    MazeFile.generate(file, 70, 40, 5, false, false);
+    MazeFile loaded = MazeFile.load(file);
+    t.checkExpect(loaded.seed, 5L);
+    t.checkExpect(loaded.end, 70 * 40 - 1);
+    for (int edge = 0; edge < one.cells() * 2; edge += 1) {
+      t.checkExpect(loaded.grid.isOpen(edge), one.isOpen(edge));
+    }
+    for (int cell = 0; cell < one.cells(); cell += 1) {
+      t.checkExpect(loaded.grid.openSides(cell), one.openSides(cell));
+    }
+    // a maze too big to load back is refused before any row is written
+    t.checkException(new IOException("Bad maze size 32769x32768: a maze file holds at most "
+        + Grid.MAX_CELLS + " cells"), this, "generateMazeFile", file, 32769, 32768);
+    Files.delete(file);
+  }
+
+  //EFFECT: streams a maze of the given size to the given file, for checking its exceptions
+  void generateMazeFile(Path file, int width, int height) throws IOException {
+    MazeFile.generate(file, width, height, 1, false, false);
+  }
+
+  void testRowByRow(Tester t) {
+    Maze rows = new Maze(30, 20, 4);
+    rows.onKeyEvent("e");
+    rows.finishBuild(true);
+    t.checkExpect(this.isPerfect(rows.getGrid()), true);
+    t.checkExpect(rows.getPath().length > 0, true);
+    // dead ends counted from the stream match the grid's
+    RowStats streamed = new RowStats();
+    new EllerGenerator(30, 20, false, false).generate(new SplittableRandom(8), streamed);
+    Grid grid = new Grid(30, 20);
+    new EllerGenerator(30, 20, false, false).generate(new SplittableRandom(8), new GridRows(grid));
+    int deadEnds = 0;
+    for (int cell = 0; cell < grid.cells(); cell += 1) {
+      if (Integer.bitCount(grid.openSides(cell)) == 1) {
+        deadEnds += 1;
+      }
+    }
+    t.checkExpect(streamed.stats.deadEnds, (long) deadEnds);
+  }
+
+  void testMazeStats(Tester t) {
+    // the stream and the grid of the same maze count the same
+    RowStats streamed = new RowStats();
+    new EllerGenerator(60, 45, false, false).generate(new SplittableRandom(9), streamed);
+    Grid grid = new Grid(60, 45);
+    new EllerGenerator(60, 45, false, false).generate(new SplittableRandom(9), new GridRows(grid));
+    MazeAnalyzer analyzer = new MazeAnalyzer();
+    MazeStats stats = analyzer.analyze(grid, 0, grid.cells() - 1);
+    t.checkExpect(stats.cells, 2700L);
+    t.checkExpect(stats.passages(), 2699L);
+    t.checkExpect(stats.deadEnds + stats.corridors + stats.junctions, 2700L);
+    t.checkExpect(stats.deadEnds, streamed.stats.deadEnds);
+    t.checkExpect(stats.corridors, streamed.stats.corridors);
+    t.checkExpect(stats.junctions, streamed.stats.junctions);
+    t.checkExpect(stats.horizontal, streamed.stats.horizontal);
+    t.checkExpect(stats.longestStraight, streamed.stats.longestStraight);
+    t.checkExpect(streamed.stats.diameter, -1);
+    t.checkExpect(stats.solutionLength,
+        new BreadthFirstSearch().search(grid, 0, grid.cells() - 1).path.length - 1);
+    // the diameter is the farthest any cell is from the cell farthest from start
+    TreeIndex fromStart = new TreeIndex(grid, 0);
+    int farthest = 0;
+    for (int cell = 0; cell < grid.cells(); cell += 1) {
+      if (fromStart.depth(cell) > fromStart.depth(farthest)) {
+        farthest = cell;
+      }
+    }
+    t.checkExpect(stats.diameter, new TreeIndex(grid, farthest).deepest());
+    // the arrays are reused, the same maze gives the same stats again
+    t.checkExpect(analyzer.analyze(grid, 0, grid.cells() - 1).diameter, stats.diameter);
+    // the preferences do what they say
+    Grid across = new Grid(60, 45);
+    Grid down = new Grid(60, 45);
+    new MazeBuilder(60, 45, 3, true, false, false, false, 0, 2699, new BreadthFirstSearch())
+        .generate(across, new SplittableRandom(3));
+    new MazeBuilder(60, 45, 3, false, true, false, false, 0, 2699, new BreadthFirstSearch())
+        .generate(down, new SplittableRandom(3));
+    t.checkExpect(analyzer.analyze(across, 0, 2699).horizontalRatio() > 1.5, true);
+    t.checkExpect(analyzer.analyze(down, 0, 2699).horizontalRatio() < 0.67, true);
+    // one straight corridor
+    Grid corridor = new Grid(7, 1);
+    for (int cell = 0; cell < 6; cell += 1) {
+      corridor.open(cell * 2 + Grid.RIGHT_EDGE);
+    }
+    MazeStats line = new MazeAnalyzer().analyze(corridor, 3, 6);
+    t.checkExpect(line.longestStraight, 7);
+    t.checkExpect(line.deadEnds, 2L);
+    t.checkExpect(line.solutionLength, 3);
+    t.checkExpect(line.diameter, 6);
+    // no passages down in a maze one row high, so no ratio
+    t.checkExpect(line.horizontalRatio(), -1.0);
+    t.checkExpect(line.toString().endsWith("horizontal:vertical -1.000"), true);
+    t.checkExpect(new MazeAnalyzer().analyze(new Grid(1, 1), 0, 0).horizontalRatio(), -1.0);
+    t.checkExpect(new MazeAnalyzer().analyze(new Grid(3, 3), 0, 8).solutionLength, -1);
+  }
+
+  void testRegenerateRegion(Tester t) {
+    Maze maze = new Maze(40, 30, 21);
+    Grid grid = maze.getGrid();
+    int end = grid.cells() - 1;
+    // the forest answers what the index does
+    DynamicSpanningTree forest = new DynamicSpanningTree(grid);
+    SplittableRandom rand = new SplittableRandom(21);
+    for (int query = 0; query < 100; query += 1) {
+      int from = rand.nextInt(grid.cells());
+      int to = rand.nextInt(grid.cells());
+      t.checkExpect(forest.distance(from, to), maze.distanceBetween(from, to));
+      t.checkExpect(forest.path(from, to), maze.pathBetween(from, to));
+      t.checkExpect(forest.findRoot(from), forest.findRoot(to));
+    }
+    t.checkException(new IllegalArgumentException("A 10x10 region at (35, 0) is not inside a "
+        + "40x30 maze"), forest, "regenerate", 35, 0, 10, 10, new SplittableRandom(1), false,
+        false);
+    // only passages between two cells of the region change, and the maze stays perfect
+    boolean[] before = new boolean[grid.cells() * 2];
+    for (int edge = 0; edge < before.length; edge += 1) {
+      before[edge] = grid.hasEdge(edge) && grid.isOpen(edge);
+    }
+    maze.regenerateRegion(5, 7, 12, 9);
+    t.checkExpect(this.isPerfect(grid), true);
+    boolean changed = false;
+    for (int edge = 0; edge < before.length; edge += 1) {
+      if (grid.hasEdge(edge)) {
+        int from = grid.edgeFrom(edge);
+        int to = grid.edgeTo(edge);
+        boolean inside = grid.x(from) >= 5 && grid.x(to) < 17 && grid.y(from) >= 7
+            && grid.y(to) < 16;
+        if (!inside) {
+          t.checkExpect(grid.isOpen(edge), before[edge]);
+        }
+        changed = changed || grid.isOpen(edge) != before[edge];
+      }
+    }
+    t.checkExpect(changed, true);
+    // the maze's answers follow the new passages, without the index
+    TreeIndex fresh = new TreeIndex(grid, end);
+    for (int cell = 0; cell < grid.cells(); cell += 1) {
+      t.checkExpect(maze.cellsToExit(cell), fresh.depth(cell));
+      t.checkExpect(maze.hintFrom(cell), fresh.parent(cell));
+    }
+    t.checkExpect(maze.getPath(), new BreadthFirstSearch().search(grid, 0, end).path);
+    // again and again, anywhere, even the whole maze
+    for (int round = 0; round < 30; round += 1) {
+      int x = rand.nextInt(40);
+      int y = rand.nextInt(30);
+      maze.regenerateRegion(x, y, 1 + rand.nextInt(40 - x), 1 + rand.nextInt(30 - y));
+      t.checkExpect(this.isPerfect(grid), true);
+      int cell = rand.nextInt(grid.cells());
+      t.checkExpect(maze.cellsToExit(cell), new TreeIndex(grid, end).depth(cell));
+    }
+    maze.regenerateRegion(0, 0, 40, 30);
+    t.checkExpect(this.isPerfect(grid), true);
+    t.checkExpect(maze.index().depth(0), maze.getPath().length - 1);
+    // with the heat map on, every region goes through the same forest, and the index drawn
+    // follows the regions changed
+    maze.onKeyEvent("m");
+    DynamicSpanningTree kept = maze.forest();
+    t.checkExpect(kept == null, false);
+    maze.draw();
+    maze.regenerateRegion(10, 10, 5, 5);
+    maze.draw();
+    maze.regenerateRegion(20, 3, 6, 4);
+    t.checkExpect(maze.forest() == kept, true);
+    maze.draw();
+    TreeIndex drawn = maze.index();
+    TreeIndex redone = new TreeIndex(grid, end);
+    for (int cell = 0; cell < grid.cells(); cell += 1) {
+      t.checkExpect(drawn.depth(cell), redone.depth(cell));
+    }
+    maze.onKeyEvent("m");
+    // the player generates the region around them again
+    maze.onKeyEvent("p");
+    maze.onKeyEvent("x");
+    t.checkExpect(this.isPerfect(grid), true);
+    t.checkExpect(Maze.regionStart(3, 40), 0);
+    t.checkExpect(Maze.regionStart(25, 40), 15);
+    t.checkExpect(Maze.regionStart(38, 40), 20);
+    t.checkExpect(Maze.regionStart(3, 8), 0);
+  }
+
+  void testParallelSpanningTree(Tester t) {
+    Grid one = new Grid(150, 130);
+    one.randomizeWeights(new SplittableRandom(6), false, false);
+    new ParallelSpanningTree(one, 6).generate(new ForkJoinPool(1));
+    t.checkExpect(this.isPerfect(one), true);
+    // the same seed gives the same maze on any number of threads
+    Grid other = new Grid(150, 130);
+    other.randomizeWeights(new SplittableRandom(6), false, false);
+    new ParallelSpanningTree(other, 6).generate(new ForkJoinPool(4));
+    for (int edge = 0; edge < one.cells() * 2; edge += 1) {
+      t.checkExpect(one.isOpen(edge), other.isOpen(edge));
+    }
+    // with no ties, it is the same tree Kruskal's algorithm finds
+    Grid small = new Grid(3, 3);
+    for (int edge = 0; edge < small.cells() * 2; edge += 1) {
+      small.setWeight(edge, (edge * 37) % 18);
+    }
+    Maze kruskal = new Maze(small);
+    Grid boruvka = new Grid(3, 3);
+    for (int edge = 0; edge < small.cells() * 2; edge += 1) {
+      boruvka.setWeight(edge, (edge * 37) % 18);
+    }
+    new ParallelSpanningTree(boruvka, 0).generate(ForkJoinPool.commonPool());
+    for (int edge = 0; edge < small.cells() * 2; edge += 1) {
+      t.checkExpect(boruvka.isOpen(edge), small.isOpen(edge));
+    }
+    Maze game = new Maze(40, 30, 2);
+    game.onKeyEvent("g");
+    game.finishBuild(true);
+    t.checkExpect(this.isPerfect(game.getGrid()), true);
+    t.checkExpect(game.getPath().length > 0, true);
+  }
 
   void testBigBang(Tester t) {
     initializeVars();
@@ -667,18 +2441,54 @@ class ExamplesMaze {
 
   void testOtherEnd(Tester t) {
     initializeVars();
-    Edge edge = new Edge(left, right, 5);
-    t.checkExpect(edge.otherEnd(left), right);
+    t.checkExpect(grid.edgeFrom(midRight), mid);
+    t.checkExpect(grid.edgeTo(midRight), right);
+    t.checkExpect(grid.edgeTo(mid * 2 + Grid.DOWN_EDGE), bot);
+    t.checkExpect(grid.edgeToward(right, Grid.LEFT), midRight);
   }
 
   void testUnionFind(Tester t) {
     initializeVars();
-    NodeUnionFind nuf = new NodeUnionFind();
-    nuf.setRepresentatives(cols);
-    t.checkExpect(nuf.find(left), left);
-    nuf.union(left, right);
-    t.checkExpect(nuf.find(right), right);
+    NodeUnionFind nuf = new NodeUnionFind(4);
+    t.checkExpect(nuf.find(0), 0);
+    t.checkExpect(nuf.union(0, 1), true);
+    t.checkExpect(nuf.find(1), 1);
+    t.checkExpect(nuf.find(0), 1);
     // after unioning, size goes down to 3
     t.checkExpect(nuf.size(), 3);
+    t.checkExpect(nuf.union(1, 0), false);
+    t.checkExpect(nuf.size(), 3);
+    // the smaller set goes under the larger one, whichever is given first
+    nuf.union(1, 2);
+    t.checkExpect(nuf.find(2), 1);
+    nuf.union(3, 2);
+    t.checkExpect(nuf.find(3), 1);
+    t.checkExpect(nuf.size(), 1);
   }
-}
\ No newline at end of file
+}
+
+// examples too slow to run with ExamplesMaze every time, a couple of minutes each:
+// mvn compile exec:java -Dexec.args=ExamplesLargeMaze
+class ExamplesLargeMaze {
+  // a maze of the most cells a grid can have streams to a file and loads back, off the heap
+  void testMazeFileAtCap(Tester t) throws IOException {
+    Path file = Files.createTempFile("maze", ".maze");
+    MazeFile.generate(file, 1 << 15, 1 << 15, 7, false, false);
+    t.checkExpect(Files.size(file), MazeFile.fileBytes(1 << 15, 1 << 15));
+    Path scratch = Files.createTempDirectory("stores");
+    MazeFile loaded = MazeFile.load(file, new MappedStorage(scratch));
+    t.checkExpect(loaded.grid.cells(), Grid.MAX_CELLS);
+    t.checkExpect(loaded.seed, 7L);
+    t.checkExpect(loaded.start, 0);
+    t.checkExpect(loaded.end, Grid.MAX_CELLS - 1);
+    // every cell of a perfect maze has a way out, and nothing leads off its edge
+    for (int x = 0; x < loaded.grid.width; x += 1) {
+      t.checkExpect(loaded.grid.openSides(loaded.end - x) != 0, true);
+      t.checkExpect(loaded.grid.canMove(loaded.end - x, Grid.DOWN), false);
+    }
+    t.checkExpect(loaded.grid.canMove(loaded.end, Grid.RIGHT), false);
+    loaded.grid.close();
+    Files.delete(file);
+    Files.delete(scratch);
+  }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+// to save and load a maze as a compact binary file, memory-mapped instead of parsed:
+// a little-endian header of magic, version, width, height, seed, start and end, then the
+// right-open and down-open planes exactly as Grid holds them, one bit per cell in each
+class MazeFile {
+  // "MAZE" in ASCII
+  static final int MAGIC = 0x4D415A45;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 32;
+  // the largest region mapped at once, well under the 2 GB limit of one MappedByteBuffer
+  static final long MAX_MAP_BYTES = 1L << 30;
+
+  final Grid grid;
+  final long seed;
+  final int start;
+  final int end;
+
+  MazeFile(Grid grid, long seed, int start, int end) {
+    this.grid = grid;
+    this.seed = seed;
+    this.start = start;
+    this.end = end;
+  }
+
+  // the size of the file holding a maze of the given grid's size
+  static long fileBytes(Grid grid) {
+    return MazeFile.fileBytes(grid.width, grid.height);
+  }
+
+  // the size of the file holding a maze of the given width and height
+  static long fileBytes(int width, int height) {
+    return HEADER_BYTES + 2L * ((width + 63) >>> 6) * height * Long.BYTES;
+  }
+
+  //EFFECT: writes this maze to the given file, replacing whatever was there
+  void save(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(this.grid.width);
+      header.putInt(this.grid.height);
+      header.putLong(this.seed);
+      header.putInt(this.start);
+      header.putInt(this.end);
+      this.mapPlane(channel, false, true);
+      this.mapPlane(channel, true, true);
+    }
+  }
+
+  // returns the maze saved in the given file
+  static MazeFile load(Path file) throws IOException {
+    return MazeFile.load(file, new HeapStorage());
+  }
+
+  // returns the maze saved in the given file, its grid kept in the given storage
+  static MazeFile load(Path file, IStorage storage) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("Not a maze file: " + file);
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a maze file: " + file);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported maze file version " + version + ": " + file);
+      }
+      int width = header.getInt();
+      int height = header.getInt();
+      long seed = header.getLong();
+      int start = header.getInt();
+      int end = header.getInt();
+      if (width <= 0 || height <= 0 || (long) width * height > Grid.MAX_CELLS) {
+        throw new IOException("Bad maze size " + width + "x" + height + ": " + file);
+      }
+      int cells = width * height;
+      if (start < 0 || end < 0 || start >= cells || end >= cells) {
+        throw new IOException("Bad start or end " + start + ", " + end + ": " + file);
+      }
+      // checked before the grid is made, so a short file never costs a whole maze's memory
+      if (channel.size() != fileBytes(width, height)) {
+        throw new IOException("Truncated maze file: " + file);
+      }
+      MazeFile loaded = new MazeFile(new Grid(width, height, storage), seed, start, end);
+      loaded.mapPlane(channel, false, false);
+      loaded.mapPlane(channel, true, false);
+      return loaded;
+    }
+  }
+
+  //EFFECT: writes a new maze of the given size and seed to the given file a row at a time
+  // with Eller's algorithm, never holding more than a row of it
+  static void generate(Path file, int width, int height, long seed, boolean horizPref,
+      boolean vertPref) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      new EllerGenerator(width, height, horizPref, vertPref)
+          .generate(new SplittableRandom(seed), new MazeFileRows(channel, seed));
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  //EFFECT: copies the right or down plane of passage bits between the grid and its place
+  // in the file, into the file when saving, otherwise out of it, one mapped region at a time
+  void mapPlane(FileChannel channel, boolean down, boolean saving) throws IOException {
+    long planeStart = HEADER_BYTES;
+    if (down) {
+      planeStart += (long) this.grid.passageWords() * Long.BYTES;
+    }
+    int wordsPerRegion = (int) (MAX_MAP_BYTES / Long.BYTES);
+    for (int word = 0; word < this.grid.passageWords(); word += wordsPerRegion) {
+      int words = Math.min(wordsPerRegion, this.grid.passageWords() - word);
+      FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+      if (saving) {
+        mode = FileChannel.MapMode.READ_WRITE;
+      }
+      MappedByteBuffer region = channel.map(mode, planeStart + (long) word * Long.BYTES,
+          (long) words * Long.BYTES);
+      LongBuffer bits = region.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+      if (saving) {
+        this.grid.getPassages(down, word, bits);
+      }
+      else {
+        this.grid.setPassages(down, word, bits);
+      }
+    }
+  }
+}
@@ -0,0 +1,294 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// what generating one maze cost, phase by phase: weighing its edges, sorting them and joining
+// sets with the union find for Kruskal's, and all of it together; phases an algorithm does not
+// have stay -1, as do the union find's counts for any algorithm but Kruskal's
+class GenerationMetrics {
+  final String algorithm;
+  final int cells;
+  long weighNanos = -1;
+  // Kruskal's: collecting the edges by weight with a counting sort and shuffling ties
+  long sortNanos = -1;
+  // Kruskal's: the union find loop, and how often it called union (two finds each), joined two
+  // sets, and asked the union find its size
+  long unionNanos = -1;
+  long edges = -1;
+  long unionCalls = -1;
+  long unions = -1;
+  long sizeCalls = -1;
+  long totalNanos = -1;
+
+  GenerationMetrics(String algorithm, int cells) {
+    this.algorithm = algorithm;
+    this.cells = cells;
+  }
+
+  public String toString() {
+    String text = this.algorithm + " " + MazeMetrics.millis(this.totalNanos) + " (weigh "
+        + MazeMetrics.millis(this.weighNanos);
+    if (this.sortNanos >= 0) {
+      text += ", sort " + MazeMetrics.millis(this.sortNanos) + " of " + this.edges
+          + " edges, union " + MazeMetrics.millis(this.unionNanos) + " " + this.unions + "/"
+          + this.unionCalls + " joined, " + this.sizeCalls + " size calls";
+    }
+    return text + ")";
+  }
+}
+
+// what one search cost: how long it took, how many cells it expanded, the most cells waiting
+// on its frontier at once, and the length of the path it found
+class SearchMetrics {
+  final String search;
+  final long nanos;
+  final int expanded;
+  final int frontierPeak;
+  final int pathLength;
+
+  SearchMetrics(String search, long nanos, int expanded, int frontierPeak, int pathLength) {
+    this.search = search;
+    this.nanos = nanos;
+    this.expanded = expanded;
+    this.frontierPeak = frontierPeak;
+    this.pathLength = pathLength;
+  }
+
+  public String toString() {
+    return this.search + " " + MazeMetrics.millis(this.nanos) + ", " + this.expanded
+        + " expanded, frontier peak " + this.frontierPeak + ", path " + this.pathLength;
+  }
+}
+
+// what drawing one frame cost: how long makeScene took, and the bytes it allocated on the way
+class FrameMetrics {
+  final long nanos;
+  final long allocatedBytes;
+
+  FrameMetrics(long nanos, long allocatedBytes) {
+    this.nanos = nanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  public String toString() {
+    return "frame " + MazeMetrics.millis(this.nanos) + ", " + this.allocatedBytes / 1024
+        + " KB allocated";
+  }
+}
+
+// the last metrics of each kind recorded, any of them null when none was
+class MetricsSnapshot {
+  final GenerationMetrics generation;
+  final SearchMetrics search;
+  final FrameMetrics frame;
+
+  MetricsSnapshot(GenerationMetrics generation, SearchMetrics search, FrameMetrics frame) {
+    this.generation = generation;
+    this.search = search;
+    this.frame = frame;
+  }
+}
+
+// where the hot paths of the game report what they cost: the last metrics of each kind are kept
+// for the HUD and snapshot while enabled, and each is also sent to Flight Recorder as an event
+// while a recording has that event on; otherwise a record is a flag check, and the hot paths
+// only ever time whole phases and count in locals, so leaving it off costs close to nothing
+class MazeMetrics {
+  // the one every part of the game reports to, whichever thread it runs on
+  static final MazeMetrics GLOBAL = new MazeMetrics();
+
+  private static final EventType GENERATION_EVENTS = EventType.getEventType(GenerationEvent.class);
+  private static final EventType SEARCH_EVENTS = EventType.getEventType(SearchEvent.class);
+  private static final EventType FRAME_EVENTS = EventType.getEventType(FrameEvent.class);
+
+  // written by the world's thread and read by the builder's and the other way around, each
+  // record replaced whole so a reader never sees half of one
+  private volatile boolean enabled;
+  private volatile GenerationMetrics generation;
+  private volatile SearchMetrics search;
+  private volatile FrameMetrics frame;
+  // null on JVMs that cannot count a thread's allocations
+  private final com.sun.management.ThreadMXBean threads;
+
+  MazeMetrics() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      this.threads = (com.sun.management.ThreadMXBean) bean;
+    }
+    else {
+      this.threads = null;
+    }
+  }
+
+  boolean isEnabled() {
+    return this.enabled;
+  }
+
+  //EFFECT: starts or stops keeping the last metrics, forgetting them when stopped
+  void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      this.generation = null;
+      this.search = null;
+      this.frame = null;
+    }
+  }
+
+  MetricsSnapshot snapshot() {
+    return new MetricsSnapshot(this.generation, this.search, this.frame);
+  }
+
+  //EFFECT: keeps the given generation's metrics, and sends them to Flight Recorder
+  void recordGeneration(GenerationMetrics metrics) {
+    if (this.enabled) {
+      this.generation = metrics;
+    }
+    if (GENERATION_EVENTS.isEnabled()) {
+      GenerationEvent event = new GenerationEvent();
+      event.algorithm = metrics.algorithm;
+      event.cells = metrics.cells;
+      event.weighNanos = metrics.weighNanos;
+      event.sortNanos = metrics.sortNanos;
+      event.unionNanos = metrics.unionNanos;
+      event.totalNanos = metrics.totalNanos;
+      event.edges = metrics.edges;
+      event.unionCalls = metrics.unionCalls;
+      event.unions = metrics.unions;
+      event.sizeCalls = metrics.sizeCalls;
+      event.commit();
+    }
+  }
+
+  // returns what the given search found from start to end of the given grid
+  //EFFECT: times the search, keeping its metrics and sending them to Flight Recorder
+  SearchResult search(ISearch search, Grid grid, int start, int end) {
+    long begin = System.nanoTime();
+    SearchResult found = search.search(grid, start, end);
+    long nanos = System.nanoTime() - begin;
+    if (this.enabled || SEARCH_EVENTS.isEnabled()) {
+      SearchMetrics metrics = new SearchMetrics(search.name(), nanos, found.exploredCount(),
+          found.frontierPeak(), found.path.length);
+      if (this.enabled) {
+        this.search = metrics;
+      }
+      if (SEARCH_EVENTS.isEnabled()) {
+        SearchEvent event = new SearchEvent();
+        event.search = metrics.search;
+        event.cells = grid.cells();
+        event.nanos = metrics.nanos;
+        event.expanded = metrics.expanded;
+        event.frontierPeak = metrics.frontierPeak;
+        event.pathLength = metrics.pathLength;
+        event.commit();
+      }
+    }
+    return found;
+  }
+
+  // the bytes this thread has allocated so far, for frameDone, -1 when nothing would record the
+  // frame or the JVM cannot count them
+  long frameStart() {
+    if (this.threads == null || (!this.enabled && !FRAME_EVENTS.isEnabled())) {
+      return -1;
+    }
+    return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  //EFFECT: keeps the metrics of a frame begun at the given time, when this thread had
+  // allocated the given bytes, and sends them to Flight Recorder
+  void frameDone(long begin, long allocatedBefore) {
+    if (!this.enabled && !FRAME_EVENTS.isEnabled()) {
+      return;
+    }
+    long nanos = System.nanoTime() - begin;
+    long allocated = -1;
+    if (allocatedBefore >= 0) {
+      allocated = this.threads.getThreadAllocatedBytes(Thread.currentThread().getId())
+          - allocatedBefore;
+    }
+    FrameMetrics metrics = new FrameMetrics(nanos, allocated);
+    if (this.enabled) {
+      this.frame = metrics;
+    }
+    if (FRAME_EVENTS.isEnabled()) {
+      FrameEvent event = new FrameEvent();
+      event.nanos = metrics.nanos;
+      event.allocatedBytes = metrics.allocatedBytes;
+      event.commit();
+    }
+  }
+
+  // the given nanoseconds as milliseconds, for the HUD
+  static String millis(long nanos) {
+    return String.format("%.1f ms", nanos / 1e6);
+  }
+}
+
+@Name("maze.Generation")
+@Label("Maze Generation")
+@Category("Maze")
+class GenerationEvent extends Event {
+  @Label("Algorithm")
+  String algorithm;
+  @Label("Cells")
+  int cells;
+  @Label("Weigh")
+  @Timespan(Timespan.NANOSECONDS)
+  long weighNanos;
+  @Label("Sort")
+  @Timespan(Timespan.NANOSECONDS)
+  long sortNanos;
+  @Label("Union")
+  @Timespan(Timespan.NANOSECONDS)
+  long unionNanos;
+  @Label("Total")
+  @Timespan(Timespan.NANOSECONDS)
+  long totalNanos;
+  @Label("Edges")
+  long edges;
+  @Label("Union Calls")
+  long unionCalls;
+  @Label("Unions")
+  long unions;
+  @Label("Size Calls")
+  long sizeCalls;
+}
+
+@Name("maze.Search")
+@Label("Maze Search")
+@Category("Maze")
+class SearchEvent extends Event {
+  @Label("Search")
+  String search;
+  @Label("Cells")
+  int cells;
+  @Label("Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+  @Label("Expanded")
+  int expanded;
+  @Label("Frontier Peak")
+  int frontierPeak;
+  @Label("Path Length")
+  int pathLength;
+}
+
+@Name("maze.Frame")
+@Label("Maze Frame")
+@Category("Maze")
+class FrameEvent extends Event {
+  @Label("Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+  @Label("Allocated")
+  @DataAmount
+  long allocatedBytes;
+}
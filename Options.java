@@ -0,0 +1,63 @@
+// reads the values of the options the command-line tools share (MazeBatch, MazeServer and
+// MazeLoadClient), so each keeps its own flags and defaults but they all read a size, seed, port
+// or number the same way, throwing an IllegalArgumentException that names what was wrong
+class MazeOptions {
+  // the given option's value as a number of at least the given least
+  static int atLeast(String option, String value, int least) {
+    int number;
+    try {
+      number = Integer.parseInt(value);
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Bad " + option + " " + value);
+    }
+    if (number < least) {
+      throw new IllegalArgumentException("Bad " + option + " " + value);
+    }
+    return number;
+  }
+
+  // the given option's value as a number from the given least to the given most
+  static int between(String option, String value, int least, int most) {
+    int number = MazeOptions.atLeast(option, value, least);
+    if (number > most) {
+      throw new IllegalArgumentException("Bad " + option + " " + value);
+    }
+    return number;
+  }
+
+  // the given option's value as a number above 0
+  static int positive(String option, String value) {
+    return MazeOptions.atLeast(option, value, 1);
+  }
+
+  // the given option's value as a TCP port, 1 to 65535
+  static int port(String option, String value) {
+    return MazeOptions.between(option, value, 1, 65535);
+  }
+
+  // the width and height of the given option's WIDTHxHEIGHT value, a maze a grid can hold
+  static int[] size(String option, String value) {
+    String[] sides = value.split("x");
+    if (sides.length != 2) {
+      throw new IllegalArgumentException("Bad size " + value + ", expected WIDTHxHEIGHT");
+    }
+    int width = MazeOptions.positive(option, sides[0]);
+    int height = MazeOptions.positive(option, sides[1]);
+    if ((long) width * height > Grid.MAX_CELLS) {
+      throw new IllegalArgumentException("A " + value + " maze has more than "
+          + Grid.MAX_CELLS + " cells");
+    }
+    return new int[] {width, height};
+  }
+
+  // the seed of the given value, any long
+  static long seed(String value) {
+    try {
+      return Long.parseLong(value);
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Bad seed " + value);
+    }
+  }
+}
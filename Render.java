@@ -0,0 +1,263 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.imageio.ImageIO;
+
+import javalib.worldimages.*;
+
+// to draw a grid into one cached image, painting the walls once per maze and then
+// only the cells that changed since the last frame
+class MazeRenderer {
+  // pixels per cell: the cell's square, then one pixel of wall or passage to its right and below
+  static final int CELL_SIZE = 16;
+  static final int SQUARE_SIZE = CELL_SIZE - 1;
+  // colors of uncolored cells in the heat map, from next to the exit to farthest from it
+  static final Color[] HEAT = MazeRenderer.heatColors(64);
+
+  private Grid grid;
+  // the maze's tree from the exit while uncolored cells are drawn as a heat map, otherwise null
+  private TreeIndex heat;
+  // made on the first render, so mazes that are never shown in a window never allocate it
+  private ComputedPixelImage image;
+
+  MazeRenderer(Grid grid) {
+    this.grid = grid;
+  }
+
+  //EFFECT: draws the given grid, the same size as the last, from now on, repainting it whole
+  void show(Grid grid) {
+    this.grid = grid;
+    grid.markAllDirty();
+  }
+
+  //EFFECT: draws uncolored cells by their depth in the given tree from the exit, or in their
+  // usual color when given null, repainting the grid whole
+  void showHeat(TreeIndex heat) {
+    this.heat = heat;
+    this.grid.markAllDirty();
+  }
+
+  // the given number of colors, from a warm yellow to a cold blue
+  static Color[] heatColors(int count) {
+    Color[] colors = new Color[count];
+    for (int i = 0; i < count; i += 1) {
+      colors[i] = Color.getHSBColor(1f / 6 + 0.5f * i / (count - 1), 0.6f, 1f);
+    }
+    return colors;
+  }
+
+  // the color the given cell's square is painted in
+  Color cellColor(int cell) {
+    byte color = this.grid.color(cell);
+    if (this.heat == null || color != Grid.UNSEEN || this.heat.depth(cell) < 0) {
+      return Grid.PALETTE[color];
+    }
+    int deepest = Math.max(1, this.heat.deepest());
+    return HEAT[(int) ((long) this.heat.depth(cell) * (HEAT.length - 1) / deepest)];
+  }
+
+  // returns the image of the maze, up to date with the grid
+  //EFFECT: repaints every cell if the walls or all colors changed, otherwise only dirty cells
+  WorldImage render() {
+    if (this.image == null) {
+      this.image = new ComputedPixelImage(this.grid.width * CELL_SIZE - 1,
+          this.grid.height * CELL_SIZE - 1);
+      this.grid.markAllDirty();
+    }
+    if (this.grid.isAllDirty()) {
+      for (int cell = 0; cell < this.grid.cells(); cell += 1) {
+        this.paintCell(cell);
+      }
+    }
+    else {
+      for (int i = 0; i < this.grid.dirtyCount(); i += 1) {
+        this.paintCell(this.grid.dirtyCell(i));
+      }
+    }
+    this.grid.clearDirty();
+    return this.image;
+  }
+
+  //EFFECT: paints the given cell's square, and the wall or passage to its right and below
+  void paintCell(int cell) {
+    Color color = this.cellColor(cell);
+    int left = this.grid.x(cell) * CELL_SIZE;
+    int top = this.grid.y(cell) * CELL_SIZE;
+    for (int y = top; y < top + SQUARE_SIZE; y += 1) {
+      for (int x = left; x < left + SQUARE_SIZE; x += 1) {
+        this.image.setPixel(x, y, color);
+      }
+    }
+    if (this.grid.hasNeighbor(cell, Grid.RIGHT)) {
+      Color wall = this.wallColor(cell, Grid.RIGHT, color);
+      for (int y = top; y < top + SQUARE_SIZE; y += 1) {
+        this.image.setPixel(left + SQUARE_SIZE, y, wall);
+      }
+    }
+    if (this.grid.hasNeighbor(cell, Grid.DOWN)) {
+      Color wall = this.wallColor(cell, Grid.DOWN, color);
+      for (int x = left; x < left + SQUARE_SIZE; x += 1) {
+        this.image.setPixel(x, top + SQUARE_SIZE, wall);
+      }
+      // some wall always meets the corner between four cells of a perfect maze
+      if (this.grid.hasNeighbor(cell, Grid.RIGHT)) {
+        this.image.setPixel(left + SQUARE_SIZE, top + SQUARE_SIZE, Color.black);
+      }
+    }
+  }
+
+  // the color of the line between the given cell and its neighbor in the given direction:
+  // a black wall, or the cell's own color when the passage is open
+  Color wallColor(int cell, int dir, Color color) {
+    if (this.grid.canMove(cell, dir)) {
+      return color;
+    }
+    else {
+      return Color.black;
+    }
+  }
+}
+
+// to draw a grid straight into the pixels of a BufferedImage, without javalib or a window,
+// splitting the maze into square tiles of cells that are painted in parallel
+class MazeRasterizer {
+  // cells per side of a tile, each painted as one fork join task
+  static final int TILE_CELLS = 64;
+
+  private final Grid grid;
+  // pixels per cell: the cell's square, then one pixel of wall or passage to its right and below
+  private final int cellSize;
+  // cells on the solution path, drawn in the path color whatever their color in the grid
+  private final BitSet onPath;
+
+  MazeRasterizer(Grid grid, int cellSize, int[] path) {
+    if (cellSize < 2) {
+      throw new IllegalArgumentException("A cell needs at least 2 pixels, given " + cellSize);
+    }
+    if ((long) grid.width * cellSize * grid.height * cellSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("A " + grid.width + "x" + grid.height
+          + " maze is too large for one image at " + cellSize + " pixels per cell");
+    }
+    this.grid = grid;
+    this.cellSize = cellSize;
+    this.onPath = new BitSet(grid.cells());
+    for (int cell : path) {
+      this.onPath.set(cell);
+    }
+  }
+
+  // returns a new image of the whole maze, with its tiles painted on the given pool
+  BufferedImage rasterize(ForkJoinPool pool) {
+    int imageWidth = this.grid.width * this.cellSize - 1;
+    BufferedImage image = new BufferedImage(imageWidth, this.grid.height * this.cellSize - 1,
+        BufferedImage.TYPE_INT_RGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    int tilesAcross = (this.grid.width + TILE_CELLS - 1) / TILE_CELLS;
+    int tilesDown = (this.grid.height + TILE_CELLS - 1) / TILE_CELLS;
+    pool.invoke(new RasterizeTiles(this, pixels, imageWidth, tilesAcross, 0,
+        tilesAcross * tilesDown));
+    return image;
+  }
+
+  //EFFECT: writes a PNG of the whole maze to the given file, rendered on the common pool
+  void writePng(File file) throws IOException {
+    ImageIO.write(this.rasterize(ForkJoinPool.commonPool()), "png", file);
+  }
+
+  //EFFECT: paints every cell of the given tile into the pixels of an image of the given width
+  void paintTile(int[] pixels, int imageWidth, int tileX, int tileY) {
+    int right = Math.min(this.grid.width, (tileX + 1) * TILE_CELLS);
+    int bottom = Math.min(this.grid.height, (tileY + 1) * TILE_CELLS);
+    for (int y = tileY * TILE_CELLS; y < bottom; y += 1) {
+      for (int x = tileX * TILE_CELLS; x < right; x += 1) {
+        this.paintCell(pixels, imageWidth, this.grid.index(x, y));
+      }
+    }
+  }
+
+  //EFFECT: paints the given cell's square, and the wall or passage to its right and below
+  void paintCell(int[] pixels, int imageWidth, int cell) {
+    int rgb;
+    if (this.onPath.get(cell)) {
+      rgb = Grid.PALETTE[Grid.PATH].getRGB();
+    }
+    else {
+      rgb = Grid.PALETTE[this.grid.color(cell)].getRGB();
+    }
+    int wall = Color.black.getRGB();
+    int square = this.cellSize - 1;
+    int left = this.grid.x(cell) * this.cellSize;
+    int top = this.grid.y(cell) * this.cellSize;
+    boolean hasRight = this.grid.hasNeighbor(cell, Grid.RIGHT);
+    boolean hasDown = this.grid.hasNeighbor(cell, Grid.DOWN);
+    int rightRgb = wall;
+    if (this.grid.canMove(cell, Grid.RIGHT)) {
+      rightRgb = rgb;
+    }
+    for (int y = top; y < top + square; y += 1) {
+      int row = y * imageWidth;
+      Arrays.fill(pixels, row + left, row + left + square, rgb);
+      if (hasRight) {
+        pixels[row + left + square] = rightRgb;
+      }
+    }
+    if (hasDown) {
+      int row = (top + square) * imageWidth;
+      if (this.grid.canMove(cell, Grid.DOWN)) {
+        Arrays.fill(pixels, row + left, row + left + square, rgb);
+      }
+      else {
+        Arrays.fill(pixels, row + left, row + left + square, wall);
+      }
+      // some wall always meets the corner between four cells of a perfect maze
+      if (hasRight) {
+        pixels[row + left + square] = wall;
+      }
+    }
+  }
+}
+
+// to paint a range of a rasterizer's tiles, splitting it in half until it is one tile
+class RasterizeTiles extends RecursiveAction {
+  private final MazeRasterizer rasterizer;
+  private final int[] pixels;
+  private final int imageWidth;
+  private final int tilesAcross;
+  // tiles are numbered across then down, this paints from firstTile up to but not lastTile
+  private final int firstTile;
+  private final int lastTile;
+
+  RasterizeTiles(MazeRasterizer rasterizer, int[] pixels, int imageWidth, int tilesAcross,
+      int firstTile, int lastTile) {
+    this.rasterizer = rasterizer;
+    this.pixels = pixels;
+    this.imageWidth = imageWidth;
+    this.tilesAcross = tilesAcross;
+    this.firstTile = firstTile;
+    this.lastTile = lastTile;
+  }
+
+  //EFFECT: paints this range of tiles, in parallel when it holds more than one
+  protected void compute() {
+    if (this.lastTile - this.firstTile <= 1) {
+      for (int tile = this.firstTile; tile < this.lastTile; tile += 1) {
+        this.rasterizer.paintTile(this.pixels, this.imageWidth, tile % this.tilesAcross,
+            tile / this.tilesAcross);
+      }
+    }
+    else {
+      int middle = (this.firstTile + this.lastTile) >>> 1;
+      invokeAll(
+          new RasterizeTiles(this.rasterizer, this.pixels, this.imageWidth, this.tilesAcross,
+              this.firstTile, middle),
+          new RasterizeTiles(this.rasterizer, this.pixels, this.imageWidth, this.tilesAcross,
+              middle, this.lastTile));
+    }
+  }
+}
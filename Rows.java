@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// to take a maze a row at a time, as a streaming generator finishes each one
+interface IRowConsumer {
+  //EFFECT: gets ready for a maze of the given size, before any of its rows
+  void begin(int width, int height);
+
+  //EFFECT: takes the passages of the next row, in the padded words Grid keeps its planes in:
+  // bit x of right is set when cell x is open to its right, of down when open below
+  // the arrays are reused for the next row, so anything kept must be copied
+  void row(int y, long[] right, long[] down);
+
+  //EFFECT: finishes up, after the last row
+  void end();
+}
+
+// generates a perfect maze one row at a time with Eller's algorithm, keeping only the set
+// of every cell of the current row, so memory grows with the width and never the height
+// neighbors in a row join with joinPercent chance and each cell drops a passage below with
+// dropPercent chance; every set must drop once and the last row joins everything, so an even
+// split leans down, and the chances are measured instead so each setting gives about the
+// passages across for every passage down it gives under Kruskal (see joinPercent)
+class EllerGenerator {
+  final int width;
+  final int height;
+  final int joinPercent;
+  final int dropPercent;
+
+  EllerGenerator(int width, int height, boolean horizPref, boolean vertPref) {
+    this.width = width;
+    this.height = height;
+    this.joinPercent = joinPercent(horizPref, vertPref);
+    this.dropPercent = dropPercent(horizPref, vertPref);
+  }
+
+  // the chance neighbors join under the given preference, found with MazeAnalyzer over 300x300
+  // mazes to give Kruskal's horizontal:vertical ratio of about 1.0 standard, 7.4 with horizPref
+  // and 0.14 with vertPref, within a few percent from 100 to 1000 cells wide
+  static int joinPercent(boolean horizPref, boolean vertPref) {
+    if (horizPref) {
+      return 89;
+    }
+    else if (vertPref) {
+      return 13;
+    }
+    else {
+      return 64;
+    }
+  }
+
+  // the chance a cell drops a passage below under the given preference, measured with joinPercent
+  static int dropPercent(boolean horizPref, boolean vertPref) {
+    if (horizPref) {
+      return 5;
+    }
+    else if (vertPref) {
+      return 65;
+    }
+    else {
+      return 44;
+    }
+  }
+
+  //EFFECT: generates a maze from the given generator, handing every row to the given consumer
+  // as soon as it is finished
+  void generate(SplittableRandom rand, IRowConsumer consumer) {
+    int words = (this.width + 63) >>> 6;
+    long[] right = new long[words];
+    long[] down = new long[words];
+    // the set of every cell of the current row, a label below width
+    int[] labels = new int[this.width];
+    // cells of each set not yet passed while dropping, and whether the set has dropped yet
+    int[] remaining = new int[this.width];
+    boolean[] dropped = new boolean[this.width];
+    NodeUnionFind sets = new NodeUnionFind(this.width);
+    for (int x = 0; x < this.width; x += 1) {
+      labels[x] = x;
+    }
+    consumer.begin(this.width, this.height);
+    for (int y = 0; y < this.height; y += 1) {
+      boolean last = y == this.height - 1;
+      Arrays.fill(right, 0L);
+      Arrays.fill(down, 0L);
+      sets.reset();
+      // join neighbors of different sets, all of them on the last row so it ends up one set
+      for (int x = 0; x < this.width - 1; x += 1) {
+        if ((last || rand.nextInt(100) < this.joinPercent)
+            && sets.union(labels[x], labels[x + 1])) {
+          right[x >>> 6] |= 1L << x;
+        }
+      }
+      if (!last) {
+        Arrays.fill(remaining, 0);
+        Arrays.fill(dropped, false);
+        for (int x = 0; x < this.width; x += 1) {
+          labels[x] = sets.find(labels[x]);
+          remaining[labels[x]] += 1;
+        }
+        // every set drops at least once, its last cell drops if none before it did
+        for (int x = 0; x < this.width; x += 1) {
+          int set = labels[x];
+          remaining[set] -= 1;
+          if (rand.nextInt(100) < this.dropPercent || (remaining[set] == 0 && !dropped[set])) {
+            down[x >>> 6] |= 1L << x;
+            dropped[set] = true;
+          }
+        }
+        // cells below a drop keep its set, the rest start sets of their own under unused labels
+        int free = 0;
+        for (int x = 0; x < this.width; x += 1) {
+          if ((down[x >>> 6] & (1L << x)) == 0) {
+            while (dropped[free]) {
+              free += 1;
+            }
+            labels[x] = free;
+            dropped[free] = true;
+          }
+        }
+      }
+      consumer.row(y, right, down);
+    }
+    consumer.end();
+  }
+}
+
+// writes streamed rows into a grid, so the renderer and searches see them
+class GridRows implements IRowConsumer {
+  final Grid grid;
+
+  GridRows(Grid grid) {
+    this.grid = grid;
+  }
+
+  public void begin(int width, int height) {
+    if (width != this.grid.width || height != this.grid.height) {
+      throw new IllegalArgumentException("Rows of a " + width + "x" + height
+          + " maze do not fit a " + this.grid.width + "x" + this.grid.height + " grid");
+    }
+    this.grid.closeAll();
+  }
+
+  public void row(int y, long[] right, long[] down) {
+    this.grid.setPassages(false, y * this.grid.stride, LongBuffer.wrap(right));
+    this.grid.setPassages(true, y * this.grid.stride, LongBuffer.wrap(down));
+  }
+
+  public void end() {
+    // every row is already in the grid
+  }
+}
+
+// writes streamed rows straight into a maze file, each at its place in the two planes,
+// without ever holding more than a row
+class MazeFileRows implements IRowConsumer {
+  final FileChannel channel;
+  final long seed;
+  private long planeBytes;
+  private ByteBuffer buffer;
+
+  MazeFileRows(FileChannel channel, long seed) {
+    this.channel = channel;
+    this.seed = seed;
+  }
+
+  public void begin(int width, int height) {
+    // no bigger than a grid can load it back into
+    if ((long) width * height > Grid.MAX_CELLS) {
+      throw new UncheckedIOException(new IOException("Bad maze size " + width + "x" + height
+          + ": a maze file holds at most " + Grid.MAX_CELLS + " cells"));
+    }
+    int words = (width + 63) >>> 6;
+    this.planeBytes = (long) words * height * Long.BYTES;
+    this.buffer = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer header = ByteBuffer.allocate(MazeFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MazeFile.MAGIC);
+    header.putInt(MazeFile.VERSION);
+    header.putInt(width);
+    header.putInt(height);
+    header.putLong(this.seed);
+    header.putInt(0);
+    header.putInt(width * height - 1);
+    header.flip();
+    this.write(header, 0);
+  }
+
+  public void row(int y, long[] right, long[] down) {
+    long rowStart = MazeFile.HEADER_BYTES + (long) y * this.buffer.capacity();
+    this.buffer.clear();
+    this.buffer.asLongBuffer().put(right);
+    this.write(this.buffer, rowStart);
+    this.buffer.clear();
+    this.buffer.asLongBuffer().put(down);
+    this.write(this.buffer, rowStart + this.planeBytes);
+  }
+
+  public void end() {
+    // every row is already in the file
+  }
+
+  //EFFECT: writes all of the given buffer to the file at the given position
+  void write(ByteBuffer bytes, long position) {
+    try {
+      while (bytes.hasRemaining()) {
+        position += this.channel.write(bytes, position);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// counts what a streamed maze is made of into MazeStats, remembering only the row above and how
+// far each column's straight line down has come; the solution and diameter need the whole
+// tree, so they are left at -1
+class RowStats implements IRowConsumer {
+  MazeStats stats;
+  private int width;
+  private long[] downAbove;
+  // cells in the straight line down ending at each column of the row above
+  private int[] downLines;
+
+  RowStats() {
+    this.stats = new MazeStats();
+  }
+
+  public void begin(int width, int height) {
+    this.width = width;
+    this.stats = new MazeStats();
+    this.downAbove = new long[(width + 63) >>> 6];
+    this.downLines = new int[width];
+  }
+
+  public void row(int y, long[] right, long[] down) {
+    // cells in the straight line across ending at x
+    int across = 0;
+    for (int x = 0; x < this.width; x += 1) {
+      long bit = 1L << x;
+      int sides = 0;
+      if ((this.downAbove[x >>> 6] & bit) != 0) {
+        sides |= 1 << Grid.UP;
+        this.downLines[x] += 1;
+      }
+      else {
+        this.downLines[x] = 1;
+      }
+      if (x > 0 && (right[(x - 1) >>> 6] & (1L << (x - 1))) != 0) {
+        sides |= 1 << Grid.LEFT;
+        across += 1;
+      }
+      else {
+        across = 1;
+      }
+      if ((down[x >>> 6] & bit) != 0) {
+        sides |= 1 << Grid.DOWN;
+      }
+      if ((right[x >>> 6] & bit) != 0) {
+        sides |= 1 << Grid.RIGHT;
+      }
+      this.stats.countCell(sides);
+      this.stats.countStraight(Math.max(across, this.downLines[x]));
+    }
+    System.arraycopy(down, 0, this.downAbove, 0, down.length);
+  }
+
+  public void end() {
+    // every row is already counted
+  }
+}
@@ -0,0 +1,440 @@
+import java.util.Arrays;
+
+// the result of searching a maze from one cell to another
+class SearchResult implements AutoCloseable {
+  // cells from start to end, both included, empty if end cannot be reached
+  final int[] path;
+  // cells in the order the search expanded them, the first exploredCount of them, left in the
+  // storage of the grid searched until something wants them on the heap to animate
+  private final IntStore explored;
+  private final int exploredCount;
+  // the most cells waiting to be expanded at once
+  private final int frontierPeak;
+
+  SearchResult(int[] path, int[] explored, int frontierPeak) {
+    this(path, new HeapIntStore(explored), explored.length, frontierPeak);
+  }
+
+  SearchResult(int[] path, IntStore explored, int exploredCount, int frontierPeak) {
+    this.path = path;
+    this.explored = explored;
+    this.exploredCount = exploredCount;
+    this.frontierPeak = frontierPeak;
+  }
+
+  int exploredCount() {
+    return this.exploredCount;
+  }
+
+  int frontierPeak() {
+    return this.frontierPeak;
+  }
+
+  // cells in the order the search expanded them
+  int[] explored() {
+    return this.explored.toArray(this.exploredCount);
+  }
+
+  // cells in the order the search expanded them, a few bits a cell, in a grid of the given width
+  CellTrace trace(int width) {
+    CellTrace trace = new CellTrace(width);
+    for (int i = 0; i < this.exploredCount; i += 1) {
+      trace.add(this.explored.get(i));
+    }
+    return trace.copy();
+  }
+
+  //EFFECT: closes the store of explored cells, after which only the path is left to read
+  public void close() {
+    this.explored.close();
+  }
+}
+
+// to represent a way of finding a path through the open passages of a grid
+interface ISearch {
+  // searches the given grid from start to end
+  SearchResult search(Grid grid, int start, int end);
+
+  // the name shown in the overlay while this search animates
+  String name();
+}
+
+// to share the bookkeeping of every search: a visited bit for every cell, a parent for every
+// reached cell, and the order cells were expanded in, all kept in the storage of the grid
+// searched; everything but the order expanded is closed before the search returns, and that
+// goes with the result
+abstract class ASearch implements ISearch {
+
+  // a new bit for every cell of the given grid, all unset, in the grid's storage
+  static LongStore visitedBits(Grid grid) {
+    return grid.storage().longs(((long) grid.cells() + 63) >>> 6);
+  }
+
+  // walks parents back from end to start, returning the cells from start to end
+  static int[] pathBack(IntStore parents, int start, int end) {
+    int length = 1;
+    for (int cell = end; cell != start; cell = parents.get(cell)) {
+      length += 1;
+    }
+    int[] path = new int[length];
+    int cell = end;
+    for (int i = length - 1; i >= 0; i -= 1) {
+      path[i] = cell;
+      cell = parents.get(cell);
+    }
+    return path;
+  }
+
+  // the result of a search that reached end, or gave up when end is -1
+  static SearchResult result(IntStore parents, int start, int end, IntStore explored,
+      int count, int frontierPeak) {
+    int[] path;
+    if (end == -1) {
+      path = new int[0];
+    }
+    else {
+      path = pathBack(parents, start, end);
+    }
+    return new SearchResult(path, explored, count, frontierPeak);
+  }
+}
+
+// searches the cells nearest start first, using an int ring buffer as its queue
+class BreadthFirstSearch extends ASearch {
+  public SearchResult search(Grid grid, int start, int end) {
+    IntStore explored = grid.storage().ints(grid.cells());
+    // every cell is queued at most once, so the queue never wraps over itself
+    try (LongStore visited = visitedBits(grid);
+        IntStore parents = grid.storage().ints(grid.cells());
+        IntStore queue = grid.storage().ints(grid.cells())) {
+      int count = 0;
+      int head = 0;
+      int tail = 0;
+      int peak = 1;
+      queue.set(tail, start);
+      tail += 1;
+      visited.setBit(start);
+      parents.set(start, start);
+      while (head != tail) {
+        peak = Math.max(peak, tail - head);
+        int next = queue.get(head);
+        head += 1;
+        if (next == end) {
+          return result(parents, start, end, explored, count, peak);
+        }
+        explored.set(count, next);
+        count += 1;
+        for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+          if (grid.canMove(next, dir)) {
+            int neighbor = grid.neighbor(next, dir);
+            if (!visited.bit(neighbor)) {
+              visited.setBit(neighbor);
+              parents.set(neighbor, next);
+              queue.set(tail, neighbor);
+              tail += 1;
+            }
+          }
+        }
+      }
+      return result(parents, start, -1, explored, count, peak);
+    }
+  }
+
+  public String name() {
+    return "Breadth-first";
+  }
+}
+
+// searches as far down one passage as possible before backtracking, using an int stack
+class DepthFirstSearch extends ASearch {
+  public SearchResult search(Grid grid, int start, int end) {
+    IntStore explored = grid.storage().ints(grid.cells());
+    // every cell is pushed at most once
+    try (LongStore visited = visitedBits(grid);
+        IntStore parents = grid.storage().ints(grid.cells());
+        IntStore stack = grid.storage().ints(grid.cells())) {
+      int count = 0;
+      int top = 0;
+      int peak = 1;
+      stack.set(top, start);
+      top += 1;
+      visited.setBit(start);
+      parents.set(start, start);
+      while (top > 0) {
+        peak = Math.max(peak, top);
+        top -= 1;
+        int next = stack.get(top);
+        if (next == end) {
+          return result(parents, start, end, explored, count, peak);
+        }
+        explored.set(count, next);
+        count += 1;
+        for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+          if (grid.canMove(next, dir)) {
+            int neighbor = grid.neighbor(next, dir);
+            if (!visited.bit(neighbor)) {
+              visited.setBit(neighbor);
+              parents.set(neighbor, next);
+              stack.set(top, neighbor);
+              top += 1;
+            }
+          }
+        }
+      }
+      return result(parents, start, -1, explored, count, peak);
+    }
+  }
+
+  public String name() {
+    return "Depth-first";
+  }
+}
+
+// searches the cheapest reached cell first, where cost is decided by the subclass
+abstract class ABestFirstSearch extends ASearch {
+
+  // the cost of moving along the given edge
+  abstract int stepCost(Grid grid, int edge);
+
+  // an estimate of the cost left from the given cell to end, never more than the real cost
+  abstract int estimate(Grid grid, int cell, int end);
+
+  public SearchResult search(Grid grid, int start, int end) {
+    IntStore explored = grid.storage().ints(grid.cells());
+    try (LongStore visited = visitedBits(grid);
+        IntStore parents = grid.storage().ints(grid.cells());
+        IntStore costs = grid.storage().ints(grid.cells())) {
+      costs.fill(Integer.MAX_VALUE);
+      int count = 0;
+      CellHeap frontier = new CellHeap(16);
+      costs.set(start, 0);
+      parents.set(start, start);
+      frontier.push(start, this.estimate(grid, start, end));
+      while (!frontier.isEmpty()) {
+        int next = frontier.pop();
+        if (visited.bit(next)) {
+          // an outdated entry, already expanded at a lower cost
+        }
+        else if (next == end) {
+          return result(parents, start, end, explored, count, frontier.peak());
+        }
+        else {
+          visited.setBit(next);
+          explored.set(count, next);
+          count += 1;
+          for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+            if (grid.canMove(next, dir)) {
+              int neighbor = grid.neighbor(next, dir);
+              int cost = costs.get(next) + this.stepCost(grid, grid.edgeToward(next, dir));
+              if (!visited.bit(neighbor) && cost < costs.get(neighbor)) {
+                costs.set(neighbor, cost);
+                parents.set(neighbor, next);
+                frontier.push(neighbor, cost + this.estimate(grid, neighbor, end));
+              }
+            }
+          }
+        }
+      }
+      return result(parents, start, -1, explored, count, frontier.peak());
+    }
+  }
+}
+
+// searches toward end first, guided by the Manhattan distance left to it
+class AStarSearch extends ABestFirstSearch {
+  int stepCost(Grid grid, int edge) {
+    return 1;
+  }
+
+  int estimate(Grid grid, int cell, int end) {
+    return Math.abs(grid.x(cell) - grid.x(end)) + Math.abs(grid.y(cell) - grid.y(end));
+  }
+
+  public String name() {
+    return "A*";
+  }
+}
+
+// searches the cell with the lowest total edge weight from start first
+class DijkstraSearch extends ABestFirstSearch {
+  int stepCost(Grid grid, int edge) {
+    return grid.weight(edge);
+  }
+
+  int estimate(Grid grid, int cell, int end) {
+    return 0;
+  }
+
+  public String name() {
+    return "Dijkstra";
+  }
+}
+
+// searches breadth-first from both start and end at once, a layer at a time from the
+// smaller frontier, until the two meet
+class BidirectionalSearch extends ASearch {
+  public SearchResult search(Grid grid, int start, int end) {
+    if (start == end) {
+      return new SearchResult(new int[] {start}, new int[0], 1);
+    }
+    IStorage storage = grid.storage();
+    IntStore explored = storage.ints(grid.cells());
+    // each queue holds every cell it reaches once, so neither wraps over itself
+    try (LongStore visitedFromStart = visitedBits(grid);
+        LongStore visitedFromEnd = visitedBits(grid);
+        IntStore parentsFromStart = storage.ints(grid.cells());
+        IntStore parentsFromEnd = storage.ints(grid.cells());
+        IntStore queueFromStart = storage.ints(grid.cells());
+        IntStore queueFromEnd = storage.ints(grid.cells())) {
+      int count = 0;
+      int headFromStart = 0;
+      int tailFromStart = 1;
+      int headFromEnd = 0;
+      int tailFromEnd = 1;
+      queueFromStart.set(0, start);
+      queueFromEnd.set(0, end);
+      visitedFromStart.setBit(start);
+      visitedFromEnd.setBit(end);
+      parentsFromStart.set(start, start);
+      parentsFromEnd.set(end, end);
+      int meet = -1;
+      int peak = 2;
+      while (meet == -1 && headFromStart != tailFromStart && headFromEnd != tailFromEnd) {
+        boolean fromStart = tailFromStart - headFromStart <= tailFromEnd - headFromEnd;
+        IntStore queue;
+        IntStore parents;
+        LongStore visited;
+        LongStore visitedOther;
+        int head;
+        int tail;
+        if (fromStart) {
+          queue = queueFromStart;
+          parents = parentsFromStart;
+          visited = visitedFromStart;
+          visitedOther = visitedFromEnd;
+          head = headFromStart;
+          tail = tailFromStart;
+        }
+        else {
+          queue = queueFromEnd;
+          parents = parentsFromEnd;
+          visited = visitedFromEnd;
+          visitedOther = visitedFromStart;
+          head = headFromEnd;
+          tail = tailFromEnd;
+        }
+        int layerEnd = tail;
+        while (meet == -1 && head != layerEnd) {
+          int next = queue.get(head);
+          head += 1;
+          explored.set(count, next);
+          count += 1;
+          for (int dir = Grid.UP; dir <= Grid.RIGHT && meet == -1; dir += 1) {
+            if (grid.canMove(next, dir)) {
+              int neighbor = grid.neighbor(next, dir);
+              if (!visited.bit(neighbor)) {
+                visited.setBit(neighbor);
+                parents.set(neighbor, next);
+                queue.set(tail, neighbor);
+                tail += 1;
+                if (visitedOther.bit(neighbor)) {
+                  meet = neighbor;
+                }
+              }
+            }
+          }
+        }
+        if (fromStart) {
+          headFromStart = head;
+          tailFromStart = tail;
+        }
+        else {
+          headFromEnd = head;
+          tailFromEnd = tail;
+        }
+        // both frontiers, a layer at a time
+        peak = Math.max(peak, tailFromStart - headFromStart + tailFromEnd - headFromEnd);
+      }
+      if (meet == -1) {
+        return result(parentsFromStart, start, -1, explored, count, peak);
+      }
+      int[] toMeet = pathBack(parentsFromStart, start, meet);
+      int[] fromMeet = pathBack(parentsFromEnd, end, meet);
+      int[] path = Arrays.copyOf(toMeet, toMeet.length + fromMeet.length - 1);
+      for (int i = 1; i < fromMeet.length; i += 1) {
+        path[toMeet.length - 1 + i] = fromMeet[fromMeet.length - 1 - i];
+      }
+      return new SearchResult(path, explored, count, peak);
+    }
+  }
+
+  public String name() {
+    return "Bidirectional";
+  }
+}
+
+// a binary min-heap of cells keyed by int priority, growing as needed
+class CellHeap {
+  private int[] cells;
+  private int[] keys;
+  private int size;
+  // the most cells it has held at once
+  private int peak;
+
+  CellHeap(int capacity) {
+    this.cells = new int[capacity];
+    this.keys = new int[capacity];
+    this.size = 0;
+  }
+
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  int peak() {
+    return this.peak;
+  }
+
+  //EFFECT: adds the given cell with the given key
+  void push(int cell, int key) {
+    if (this.size == this.cells.length) {
+      this.cells = Arrays.copyOf(this.cells, this.size * 2);
+      this.keys = Arrays.copyOf(this.keys, this.size * 2);
+    }
+    int i = this.size;
+    this.size += 1;
+    this.peak = Math.max(this.peak, this.size);
+    while (i > 0 && this.keys[(i - 1) / 2] > key) {
+      this.cells[i] = this.cells[(i - 1) / 2];
+      this.keys[i] = this.keys[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    this.cells[i] = cell;
+    this.keys[i] = key;
+  }
+
+  // returns the cell with the lowest key
+  //EFFECT: removes that cell from the heap
+  int pop() {
+    int top = this.cells[0];
+    this.size -= 1;
+    int cell = this.cells[this.size];
+    int key = this.keys[this.size];
+    int i = 0;
+    while (i * 2 + 1 < this.size) {
+      int child = i * 2 + 1;
+      if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+        child += 1;
+      }
+      if (this.keys[child] >= key) {
+        break;
+      }
+      this.cells[i] = this.cells[child];
+      this.keys[i] = this.keys[child];
+      i = child;
+    }
+    this.cells[i] = cell;
+    this.keys[i] = key;
+    return top;
+  }
+}
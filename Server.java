@@ -0,0 +1,565 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// serves one maze to many players at once over a line protocol on localhost:
+//   java MazeServer --port 4747 --size 100x100 --seed 7
+//   java MazeServer --port 4747 --load maze.maze
+// the maze is generated or loaded once and never written again, so every session reads the same
+// grid without locking, through a ServedMaze that cannot change it; each connection only keeps
+// its own PlayerSession
+// on connecting a player is sent "MAZE width height start end seed", then every line it sends
+// gets one back:
+//   MOVE UP|DOWN|LEFT|RIGHT  ->  OK x y, WALL x y when a wall is in the way,
+//                               or WON moves at the exit
+//   WHERE                    ->  AT x y
+//   RESET                    ->  AT x y, back at the start with nothing visited
+//   QUIT                     ->  BYE, and the connection closes
+class MazeServer implements Runnable {
+  static final String USAGE = "usage: MazeServer [--port P] [--size WIDTHxHEIGHT] [--seed S]\n"
+      + "    [--load FILE, instead of generating a maze]";
+  static final int DEFAULT_PORT = 4747;
+  // connections waiting to be accepted, enough for thousands of players arriving at once
+  static final int BACKLOG = 4096;
+
+  private final ServedMaze maze;
+  private final ServerSocket socket;
+  private final ExecutorService sessions;
+  // every connection still open, closed with the server
+  private final Set<Socket> open;
+  private final AtomicLong served;
+
+  // a server of the given maze on the given port of localhost, any free one when 0
+  MazeServer(MazeFile maze, int port) throws IOException {
+    this.maze = new ServedMaze(maze);
+    this.socket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    this.sessions = MazeServer.threadPerTask();
+    this.open = ConcurrentHashMap.newKeySet();
+    this.served = new AtomicLong();
+  }
+
+  // must be public, the entry point from the command line
+  public static void main(String[] args) {
+    int port = DEFAULT_PORT;
+    int width = 100;
+    int height = 100;
+    long seed = new SplittableRandom().nextLong();
+    String load = null;
+    try {
+      for (int i = 0; i < args.length; i += 2) {
+        if (i + 1 == args.length) {
+          throw new IllegalArgumentException("Missing a value after " + args[i]);
+        }
+        if (args[i].equals("--port")) {
+          port = MazeOptions.port(args[i], args[i + 1]);
+        }
+        else if (args[i].equals("--size")) {
+          int[] size = MazeOptions.size(args[i], args[i + 1]);
+          width = size[0];
+          height = size[1];
+        }
+        else if (args[i].equals("--seed")) {
+          seed = MazeOptions.seed(args[i + 1]);
+        }
+        else if (args[i].equals("--load")) {
+          load = args[i + 1];
+        }
+        else {
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    try {
+      MazeFile maze;
+      if (load == null) {
+        maze = MazeServer.generate(width, height, seed);
+      }
+      else {
+        maze = MazeFile.load(Paths.get(load));
+      }
+      MazeServer server = new MazeServer(maze, port);
+      System.err.println("Serving a " + maze.grid.width + "x" + maze.grid.height + " maze on "
+          + "localhost:" + server.port());
+      server.run();
+    }
+    catch (IOException e) {
+      System.err.println("Could not serve the maze: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  // the maze of the given seed and size, from the top left to the bottom right
+  static MazeFile generate(int width, int height, long seed) {
+    Grid grid = new Grid(width, height);
+    new MazeBuilder(width, height, seed, false, false, false, false, 0, grid.cells() - 1,
+        new BreadthFirstSearch()).generate(grid, new SplittableRandom(seed));
+    return new MazeFile(grid, seed, 0, grid.cells() - 1);
+  }
+
+  // a thread for every task: a virtual thread where the JVM has them, looked up by reflection
+  // so the game still builds for JVMs without them, which get a growing pool of threads instead,
+  // since every session blocks on its connection
+  static ExecutorService threadPerTask() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(new BuilderThreads("maze-session"));
+    }
+  }
+
+  int port() {
+    return this.socket.getLocalPort();
+  }
+
+  // the number of connections accepted so far
+  long served() {
+    return this.served.get();
+  }
+
+  //EFFECT: accepts players until the server is closed, each on a thread of its own
+  public void run() {
+    try {
+      while (true) {
+        Socket connection = this.socket.accept();
+        connection.setTcpNoDelay(true);
+        this.open.add(connection);
+        this.served.incrementAndGet();
+        this.sessions.execute(new SessionConnection(new PlayerSession(this.maze), connection,
+            this.open));
+      }
+    }
+    catch (IOException e) {
+      // closed, every session is closed with it
+    }
+  }
+
+  //EFFECT: accepts players on a daemon thread, so the caller can go on
+  void start() {
+    Thread acceptor = new Thread(this, "maze-server");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  //EFFECT: stops accepting players and closes every connection still open
+  void close() throws IOException {
+    this.socket.close();
+    for (Socket connection : this.open) {
+      connection.close();
+    }
+    this.sessions.shutdown();
+  }
+}
+
+// the maze a server shares with every session, read only: its size, start, end and seed, and
+// which passages are open, but nothing that opens, closes or paints the grid, so no session can
+// change what every other one reads without locking
+class ServedMaze {
+  private final Grid grid;
+  final int width;
+  final int height;
+  final int start;
+  final int end;
+  final long seed;
+
+  ServedMaze(MazeFile maze) {
+    this.grid = maze.grid;
+    this.width = maze.grid.width;
+    this.height = maze.grid.height;
+    this.start = maze.start;
+    this.end = maze.end;
+    this.seed = maze.seed;
+  }
+
+  // whether the passage from the given cell in the given direction is open
+  boolean canMove(int cell, int dir) {
+    return this.grid.canMove(cell, dir);
+  }
+
+  int neighbor(int cell, int dir) {
+    return this.grid.neighbor(cell, dir);
+  }
+
+  int x(int cell) {
+    return this.grid.x(cell);
+  }
+
+  int y(int cell) {
+    return this.grid.y(cell);
+  }
+}
+
+// what one player has done in a served maze: where they are, the cells they have been to and
+// how many moves they made, all their own, so sessions share nothing but the maze
+class PlayerSession {
+  final ServedMaze maze;
+  private int position;
+  // grows with the furthest cell visited, not with the maze
+  private final BitSet visited;
+  private long moves;
+
+  PlayerSession(ServedMaze maze) {
+    this.maze = maze;
+    this.visited = new BitSet();
+    this.reset();
+  }
+
+  //EFFECT: puts the player back at the start, having visited nothing else
+  void reset() {
+    this.position = this.maze.start;
+    this.visited.clear();
+    this.visited.set(this.position);
+    this.moves = 0;
+  }
+
+  // the first line a player is sent
+  String greeting() {
+    return "MAZE " + this.maze.width + " " + this.maze.height + " " + this.maze.start + " "
+        + this.maze.end + " " + this.maze.seed;
+  }
+
+  int position() {
+    return this.position;
+  }
+
+  // the number of different cells the player has been to
+  int visitedCount() {
+    return this.visited.cardinality();
+  }
+
+  // returns the reply to the given line of the protocol
+  //EFFECT: moves or resets the player when the line says to
+  String reply(String line) {
+    String[] words = line.trim().split("\\s+");
+    String command = words[0].toUpperCase();
+    if (command.equals("MOVE") && words.length == 2) {
+      int dir = PlayerSession.direction(words[1]);
+      if (dir == -1) {
+        return "ERR Unknown direction " + words[1];
+      }
+      return this.move(dir);
+    }
+    else if (command.equals("WHERE")) {
+      return this.at("AT");
+    }
+    else if (command.equals("RESET")) {
+      this.reset();
+      return this.at("AT");
+    }
+    else if (command.equals("QUIT")) {
+      return "BYE";
+    }
+    else {
+      return "ERR Unknown command " + line.trim();
+    }
+  }
+
+  // returns OK and where the player is after moving in the given direction, WALL and where
+  // they stay when there is no passage that way, or WON and their moves once at the exit
+  //EFFECT: moves the player through the passage, as the game does
+  String move(int dir) {
+    if (!this.maze.canMove(this.position, dir)) {
+      return this.at("WALL");
+    }
+    this.position = this.maze.neighbor(this.position, dir);
+    this.visited.set(this.position);
+    this.moves += 1;
+    if (this.position == this.maze.end) {
+      return "WON " + this.moves;
+    }
+    return this.at("OK");
+  }
+
+  // the given word then the player's place
+  String at(String word) {
+    return word + " " + this.maze.x(this.position) + " " + this.maze.y(this.position);
+  }
+
+  // the direction of the given name, -1 when it is none
+  static int direction(String name) {
+    String upper = name.toUpperCase();
+    if (upper.equals("UP")) {
+      return Grid.UP;
+    }
+    else if (upper.equals("LEFT")) {
+      return Grid.LEFT;
+    }
+    else if (upper.equals("DOWN")) {
+      return Grid.DOWN;
+    }
+    else if (upper.equals("RIGHT")) {
+      return Grid.RIGHT;
+    }
+    else {
+      return -1;
+    }
+  }
+}
+
+// plays a session over one connection: greets the player, then answers every line they send
+// until they quit or hang up
+class SessionConnection implements Runnable {
+  private final PlayerSession session;
+  private final Socket connection;
+  // the server's open connections, which this one leaves once closed
+  private final Set<Socket> open;
+
+  SessionConnection(PlayerSession session, Socket connection, Set<Socket> open) {
+    this.session = session;
+    this.connection = connection;
+    this.open = open;
+  }
+
+  //EFFECT: answers the player's lines, then closes the connection
+  public void run() {
+    try (Socket closing = this.connection;
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            closing.getInputStream(), StandardCharsets.US_ASCII));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            closing.getOutputStream(), StandardCharsets.US_ASCII))) {
+      out.print(this.session.greeting() + "\n");
+      out.flush();
+      String line = in.readLine();
+      while (line != null) {
+        String reply = this.session.reply(line);
+        out.print(reply + "\n");
+        out.flush();
+        if (reply.equals("BYE")) {
+          line = null;
+        }
+        else {
+          line = in.readLine();
+        }
+      }
+    }
+    catch (IOException e) {
+      // the player hung up, or the server closed
+    }
+    finally {
+      this.open.remove(this.connection);
+    }
+  }
+}
+
+// opens many sessions of a MazeServer at once and plays random moves in each, timing every
+// move from sending it to its reply:
+//   java MazeLoadClient --port 4747 --sessions 10000 --moves 100
+class MazeLoadClient {
+  static final String USAGE = "usage: MazeLoadClient [--host H] [--port P] [--sessions N] "
+      + "[--moves M] [--seed S]";
+  // the most moves of every session together one run can time, in one array of latencies
+  static final int MAX_MOVES = Integer.MAX_VALUE - 8;
+
+  String host = "localhost";
+  int port = MazeServer.DEFAULT_PORT;
+  int sessions = 1000;
+  int moves = 100;
+  long seed = new SplittableRandom().nextLong();
+
+  // must be public, the entry point from the command line
+  public static void main(String[] args) {
+    MazeLoadClient client = new MazeLoadClient();
+    try {
+      for (int i = 0; i < args.length; i += 2) {
+        if (i + 1 == args.length) {
+          throw new IllegalArgumentException("Missing a value after " + args[i]);
+        }
+        if (args[i].equals("--host")) {
+          client.host = args[i + 1];
+        }
+        else if (args[i].equals("--port")) {
+          client.port = MazeOptions.port(args[i], args[i + 1]);
+        }
+        else if (args[i].equals("--sessions")) {
+          client.sessions = MazeOptions.positive(args[i], args[i + 1]);
+        }
+        else if (args[i].equals("--moves")) {
+          client.moves = MazeOptions.positive(args[i], args[i + 1]);
+        }
+        else if (args[i].equals("--seed")) {
+          client.seed = MazeOptions.seed(args[i + 1]);
+        }
+        else {
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+      client.checkMoves();
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    try {
+      System.out.println(client.run());
+    }
+    catch (IOException e) {
+      System.err.println("Could not reach the server: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  //EFFECT: throws an IllegalArgumentException if the sessions make more moves than one run
+  // can time, counted as a long so it cannot overflow
+  void checkMoves() {
+    long total = (long) this.sessions * this.moves;
+    if (total > MAX_MOVES) {
+      throw new IllegalArgumentException(this.sessions + " sessions of " + this.moves
+          + " moves are " + total + " moves, more than the " + MAX_MOVES + " a run can time");
+    }
+  }
+
+  // returns how long the moves took
+  //EFFECT: opens every session, waits until all of them are open, then plays them at once
+  LoadReport run() throws IOException {
+    this.checkMoves();
+    ExecutorService pool = MazeServer.threadPerTask();
+    CountDownLatch connected = new CountDownLatch(this.sessions);
+    SplittableRandom seeds = new SplittableRandom(this.seed);
+    List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+    long begin = System.nanoTime();
+    try {
+      for (int i = 0; i < this.sessions; i += 1) {
+        futures.add(pool.submit(new LoadSession(this, seeds.split(), connected)));
+      }
+      long[] latencies = new long[this.sessions * this.moves];
+      for (int i = 0; i < this.sessions; i += 1) {
+        try {
+          System.arraycopy(futures.get(i).get(), 0, latencies, i * this.moves, this.moves);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted after " + i + " sessions", e);
+        }
+        catch (ExecutionException e) {
+          if (e.getCause() instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) e.getCause()).getCause();
+          }
+          throw new IllegalStateException("Session " + i + " failed", e.getCause());
+        }
+      }
+      return new LoadReport(this.sessions, System.nanoTime() - begin, latencies);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+}
+
+// one session of a load test: connects, waits for every other session to connect, then makes
+// random moves, returning how long each took to be answered
+class LoadSession implements Callable<long[]> {
+  final MazeLoadClient client;
+  final SplittableRandom rand;
+  // counted down once this session is open, or could not be
+  final CountDownLatch connected;
+
+  LoadSession(MazeLoadClient client, SplittableRandom rand, CountDownLatch connected) {
+    this.client = client;
+    this.rand = rand;
+    this.connected = connected;
+  }
+
+  public long[] call() throws InterruptedException {
+    boolean counted = false;
+    try (Socket socket = new Socket(this.client.host, this.client.port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(),
+            StandardCharsets.US_ASCII)) {
+      socket.setTcpNoDelay(true);
+      String greeting = in.readLine();
+      if (greeting == null || !greeting.startsWith("MAZE ")) {
+        throw new IOException("Not a maze server: " + greeting);
+      }
+      this.connected.countDown();
+      counted = true;
+      this.connected.await();
+      long[] latencies = new long[this.client.moves];
+      String[] moves = {"MOVE UP\n", "MOVE LEFT\n", "MOVE DOWN\n", "MOVE RIGHT\n"};
+      for (int i = 0; i < latencies.length; i += 1) {
+        long begin = System.nanoTime();
+        out.write(moves[this.rand.nextInt(4)]);
+        out.flush();
+        String reply = in.readLine();
+        latencies[i] = System.nanoTime() - begin;
+        if (reply == null) {
+          throw new IOException("The server hung up");
+        }
+      }
+      out.write("QUIT\n");
+      out.flush();
+      in.readLine();
+      return latencies;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    finally {
+      if (!counted) {
+        this.connected.countDown();
+      }
+    }
+  }
+}
+
+// the summary of a load test: moves a second over every session, and the typical and slowest
+// times from sending a move to its reply
+class LoadReport {
+  final int sessions;
+  final long totalNanos;
+  // sorted, fastest first
+  final long[] latencies;
+
+  LoadReport(int sessions, long totalNanos, long[] latencies) {
+    this.sessions = sessions;
+    this.totalNanos = totalNanos;
+    this.latencies = latencies.clone();
+    Arrays.sort(this.latencies);
+  }
+
+  double movesPerSecond() {
+    return this.latencies.length / (this.totalNanos / 1e9);
+  }
+
+  public String toString() {
+    return String.format("%d sessions, %d moves in %.2f s, %.0f moves/s%n"
+        + "move p50 %.3f ms  p90 %.3f ms  p99 %.3f ms  max %.3f ms",
+        this.sessions, this.latencies.length, this.totalNanos / 1e9, this.movesPerSecond(),
+        BatchReport.percentile(this.latencies, 50) / 1e6,
+        BatchReport.percentile(this.latencies, 90) / 1e6,
+        BatchReport.percentile(this.latencies, 99) / 1e6,
+        this.latencies[this.latencies.length - 1] / 1e6);
+  }
+}
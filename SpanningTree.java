@@ -0,0 +1,230 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// opens the cheapest spanning tree over a grid's edge weights with Boruvka's algorithm, in
+// parallel over ranges of cells on a ForkJoinPool: every round, each component finds its
+// cheapest edge out and hooks onto the component at the other end, so the number of
+// components at least halves every round
+// ties between equal weights are broken by a hash of the edge salted from the seed, so the
+// cheapest tree is the only one, and comes out the same on any number of threads
+class ParallelSpanningTree {
+  // no edge out found yet
+  static final long NONE = Long.MAX_VALUE;
+  // enough cells or roots in a range to outweigh forking a task for it
+  static final int RANGE_SIZE = 1 << 14;
+  // bytes a cell takes on the heap, whatever storage the grid is in: its parent, root, hook and
+  // cheapest key, and a bit of each plane of passages twice, while opening and handing them over
+  // these arrays need compare-and-set across threads, which the stores of an IStorage do not have
+  static final long HEAP_BYTES_PER_CELL = 21;
+
+  // what a range does in each pass: START, FIND_FIRST and FIND_CHEAPEST range over cells,
+  // HOOK and JOIN over the roots left
+  static final int START = 0;
+  static final int FIND_FIRST = 1;
+  static final int FIND_CHEAPEST = 2;
+  static final int HOOK = 3;
+  static final int JOIN = 4;
+
+  final Grid grid;
+  private final long salt;
+  // the parent of each cell, each root is its own
+  private final int[] parents;
+  // the roots left, the first rootCount of them, and the root each is joining this round,
+  // itself if it stays a root
+  private final int[] roots;
+  private final int[] hooks;
+  private int rootCount;
+  // the key of the cheapest edge out of each root found so far this round
+  private final AtomicLongArray cheapest;
+  // the passages opened so far, laid out like Grid's planes
+  private final AtomicLongArray rightOpen;
+  private final AtomicLongArray downOpen;
+
+  ParallelSpanningTree(Grid grid, long salt) {
+    this.grid = grid;
+    this.salt = salt;
+    this.parents = new int[grid.cells()];
+    this.roots = new int[grid.cells()];
+    this.hooks = new int[grid.cells()];
+    this.rootCount = grid.cells();
+    this.cheapest = new AtomicLongArray(grid.cells());
+    this.rightOpen = new AtomicLongArray(grid.passageWords());
+    this.downOpen = new AtomicLongArray(grid.passageWords());
+  }
+
+  //EFFECT: opens the passages of the cheapest spanning tree of the grid, closing every other,
+  // running each pass of each round over the given pool
+  void generate(ForkJoinPool pool) {
+    pool.invoke(new SpanningTreeRanges(this, START, 0, this.grid.cells()));
+    int find = FIND_FIRST;
+    while (this.rootCount > 1) {
+      pool.invoke(new SpanningTreeRanges(this, find, 0, this.grid.cells()));
+      find = FIND_CHEAPEST;
+      pool.invoke(new SpanningTreeRanges(this, HOOK, 0, this.rootCount));
+      pool.invoke(new SpanningTreeRanges(this, JOIN, 0, this.rootCount));
+      int left = 0;
+      for (int i = 0; i < this.rootCount; i += 1) {
+        if (this.hooks[i] == this.roots[i]) {
+          this.roots[left] = this.roots[i];
+          left += 1;
+        }
+      }
+      this.rootCount = left;
+    }
+    long[] right = new long[this.grid.passageWords()];
+    long[] down = new long[this.grid.passageWords()];
+    for (int word = 0; word < right.length; word += 1) {
+      right[word] = this.rightOpen.get(word);
+      down[word] = this.downOpen.get(word);
+    }
+    this.grid.setPassages(right, down);
+  }
+
+  // the key of the given edge: its weight, then a salted hash to break ties, then the edge
+  // itself, so no two edges have the same key
+  long key(int edge) {
+    long hash = this.salt + edge * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return ((long) this.grid.weight(edge) << 56) | ((hash >>> 40) << 32) | edge;
+  }
+
+  //EFFECT: runs the given pass over the cells or roots from first up to but not last
+  void range(int pass, int first, int last) {
+    int width = this.grid.width;
+    for (int i = first; i < last; i += 1) {
+      if (pass == START) {
+        this.parents[i] = i;
+        this.roots[i] = i;
+      }
+      else if (pass == FIND_FIRST) {
+        this.cheapest.setPlain(i, this.cheapestSide(i));
+      }
+      else if (pass == FIND_CHEAPEST) {
+        if (this.grid.x(i) < width - 1) {
+          this.offer(i, i + 1, i * 2 + Grid.RIGHT_EDGE);
+        }
+        if (i + width < this.grid.cells()) {
+          this.offer(i, i + width, i * 2 + Grid.DOWN_EDGE);
+        }
+      }
+      else if (pass == HOOK) {
+        this.hook(i);
+      }
+      else {
+        this.parents[this.roots[i]] = this.hooks[i];
+        this.cheapest.setPlain(this.roots[i], NONE);
+      }
+    }
+  }
+
+  // the key of the cheapest edge out of the given cell, the first round, when every cell is
+  // its own component and nothing needs sharing between threads
+  long cheapestSide(int cell) {
+    long cheapest = NONE;
+    for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+      if (this.grid.hasNeighbor(cell, dir)) {
+        cheapest = Math.min(cheapest, this.key(this.grid.edgeToward(cell, dir)));
+      }
+    }
+    return cheapest;
+  }
+
+  //EFFECT: records the edge between the given cells as the cheapest out of both their
+  // components, unless they share one or either already has a cheaper one
+  void offer(int from, int to, int edge) {
+    int fromRoot = this.find(from);
+    int toRoot = this.find(to);
+    // the hash is only worth working out when the weight alone could beat either
+    long weight = (long) this.grid.weight(edge) << 56;
+    if (fromRoot != toRoot && (weight <= this.cheapest.getPlain(fromRoot)
+        || weight <= this.cheapest.getPlain(toRoot))) {
+      long key = this.key(edge);
+      this.lower(fromRoot, key);
+      this.lower(toRoot, key);
+    }
+  }
+
+  //EFFECT: lowers the cheapest key of the given root to the given key, if it is lower
+  void lower(int root, long key) {
+    long current = this.cheapest.get(root);
+    while (key < current && !this.cheapest.compareAndSet(root, current, key)) {
+      current = this.cheapest.get(root);
+    }
+  }
+
+  //EFFECT: sets the root the root at the given place in roots joins, along its cheapest edge
+  // out, opening that edge, of two roots that picked the same edge only the higher joins
+  void hook(int i) {
+    int root = this.roots[i];
+    int edge = (int) this.cheapest.get(root);
+    int other = this.find(this.grid.edgeFrom(edge));
+    if (other == root) {
+      other = this.find(this.grid.edgeTo(edge));
+    }
+    if ((int) this.cheapest.get(other) == edge && root < other) {
+      this.hooks[i] = root;
+    }
+    else {
+      this.hooks[i] = other;
+      this.open(edge);
+    }
+  }
+
+  //EFFECT: sets the passage bit of the given edge, alongside other threads setting theirs
+  void open(int edge) {
+    int cell = edge >> 1;
+    AtomicLongArray plane = this.rightOpen;
+    if ((edge & 1) == Grid.DOWN_EDGE) {
+      plane = this.downOpen;
+    }
+    int word = this.grid.y(cell) * this.grid.stride + (this.grid.x(cell) >>> 6);
+    long bit = 1L << this.grid.x(cell);
+    long current = plane.get(word);
+    while (!plane.compareAndSet(word, current, current | bit)) {
+      current = plane.get(word);
+    }
+  }
+
+  // finds the root of the given cell, halving the path on the way
+  //EFFECT: points cells on the way at their grandparents, which is safe alongside other
+  // threads doing the same since every cell only ever points higher up its own tree
+  int find(int cell) {
+    while (cell != this.parents[cell]) {
+      this.parents[cell] = this.parents[this.parents[cell]];
+      cell = this.parents[cell];
+    }
+    return cell;
+  }
+}
+
+// RecursiveAction that splits a range of cells or roots in half until it is small enough,
+// then runs a pass of ParallelSpanningTree over it
+class SpanningTreeRanges extends RecursiveAction {
+  private final ParallelSpanningTree tree;
+  private final int pass;
+  // runs the pass from first up to but not last
+  private final int first;
+  private final int last;
+
+  SpanningTreeRanges(ParallelSpanningTree tree, int pass, int first, int last) {
+    this.tree = tree;
+    this.pass = pass;
+    this.first = first;
+    this.last = last;
+  }
+
+  //EFFECT: runs the pass over this range, in parallel halves when it is big enough to be worth it
+  protected void compute() {
+    if (this.last - this.first <= ParallelSpanningTree.RANGE_SIZE) {
+      this.tree.range(this.pass, this.first, this.last);
+    }
+    else {
+      int middle = (this.first + this.last) >>> 1;
+      invokeAll(new SpanningTreeRanges(this.tree, this.pass, this.first, middle),
+          new SpanningTreeRanges(this.tree, this.pass, middle, this.last));
+    }
+  }
+}
@@ -0,0 +1,178 @@
+// what a maze is made of, for telling good mazes from bad ones: how many cells are dead ends
+// (one open side), corridors (two) and junctions (three or four), the most cells in one straight
+// line of open passages, how many passages run across and how many down, and, when the whole
+// tree was walked, the length of the solution and the longest path anywhere (the diameter)
+class MazeStats {
+  long cells;
+  // passages to a right neighbor, and to a lower one
+  long horizontal;
+  long vertical;
+  long deadEnds;
+  long corridors;
+  long junctions;
+  int longestStraight;
+  // steps from start to end, and between the two cells farthest apart, -1 when not worked out
+  int solutionLength = -1;
+  int diameter = -1;
+
+  long passages() {
+    return this.horizontal + this.vertical;
+  }
+
+  // passages across for every passage down, which horizPref raises and vertPref lowers, -1 when
+  // there are none down, as in a maze one row high
+  double horizontalRatio() {
+    if (this.vertical == 0) {
+      return -1;
+    }
+    return this.horizontal / (double) this.vertical;
+  }
+
+  //EFFECT: counts a cell with the given open sides, bit 1 << UP, LEFT, DOWN or RIGHT set when
+  // that side is open, counting the passages to its right and below as its own
+  void countCell(int sides) {
+    this.cells += 1;
+    if ((sides & (1 << Grid.RIGHT)) != 0) {
+      this.horizontal += 1;
+    }
+    if ((sides & (1 << Grid.DOWN)) != 0) {
+      this.vertical += 1;
+    }
+    int open = Integer.bitCount(sides);
+    if (open == 1) {
+      this.deadEnds += 1;
+    }
+    else if (open == 2) {
+      this.corridors += 1;
+    }
+    else if (open > 2) {
+      this.junctions += 1;
+    }
+  }
+
+  //EFFECT: counts a straight line of open passages through the given number of cells
+  void countStraight(int length) {
+    this.longestStraight = Math.max(this.longestStraight, length);
+  }
+
+  //EFFECT: adds the counts of the given stats to these, keeping the longer longest straight
+  void add(MazeStats other) {
+    this.cells += other.cells;
+    this.horizontal += other.horizontal;
+    this.vertical += other.vertical;
+    this.deadEnds += other.deadEnds;
+    this.corridors += other.corridors;
+    this.junctions += other.junctions;
+    this.longestStraight = Math.max(this.longestStraight, other.longestStraight);
+  }
+
+  // the given count as a percent of the cells
+  double percent(long count) {
+    return 100.0 * count / this.cells;
+  }
+
+  public String toString() {
+    return String.format("%d cells: %.1f%% dead ends, %.1f%% corridors, %.1f%% junctions, "
+        + "longest straight %d, solution %d, diameter %d, horizontal:vertical %.3f",
+        this.cells, this.percent(this.deadEnds), this.percent(this.corridors),
+        this.percent(this.junctions), this.longestStraight, this.solutionLength, this.diameter,
+        this.horizontalRatio());
+  }
+}
+
+// works out the stats of a maze held in a grid by walking its tree once from start, breadth
+// first, then sweeping back over the cells in the order they were reached to find the longest
+// path below each one; the int stores it walks with are made once for a size, in the storage of
+// the first grid of it, and reused for every maze of it, so nothing is allocated per cell
+// only the cells start can reach are counted, which is every cell of a perfect maze, and a maze
+// with loops is measured along the tree the walk took through it
+class MazeAnalyzer implements AutoCloseable {
+  private IntStore queue;
+  private IntStore parents;
+  // the depth of each cell from start while walking, -1 until reached, then the longest path
+  // down from it
+  private IntStore heights;
+
+  MazeAnalyzer() {
+    this.queue = new HeapIntStore(new int[0]);
+  }
+
+  // the stats of the maze in the given grid, solved from the given start to the given end
+  MazeStats analyze(Grid grid, int start, int end) {
+    if (this.queue.length() != grid.cells()) {
+      this.close();
+      this.queue = grid.storage().ints(grid.cells());
+      this.parents = grid.storage().ints(grid.cells());
+      this.heights = grid.storage().ints(grid.cells());
+    }
+    MazeStats stats = new MazeStats();
+    this.heights.fill(-1);
+    int head = 0;
+    int tail = 1;
+    this.queue.set(0, start);
+    this.parents.set(start, start);
+    this.heights.set(start, 0);
+    while (head != tail) {
+      int next = this.queue.get(head);
+      head += 1;
+      int sides = grid.openSides(next);
+      stats.countCell(sides);
+      this.countStraights(grid, next, sides, stats);
+      for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+        if ((sides & (1 << dir)) != 0) {
+          int neighbor = grid.neighbor(next, dir);
+          if (this.heights.get(neighbor) == -1) {
+            this.parents.set(neighbor, next);
+            this.heights.set(neighbor, this.heights.get(next) + 1);
+            this.queue.set(tail, neighbor);
+            tail += 1;
+          }
+        }
+      }
+    }
+    stats.solutionLength = this.heights.get(end);
+    // deepest first, every cell's longest path down is known before its parent's is needed
+    stats.diameter = 0;
+    for (int i = 0; i < tail; i += 1) {
+      this.heights.set(this.queue.get(i), 0);
+    }
+    for (int i = tail - 1; i > 0; i -= 1) {
+      int cell = this.queue.get(i);
+      int parent = this.parents.get(cell);
+      int down = this.heights.get(cell) + 1;
+      stats.diameter = Math.max(stats.diameter, this.heights.get(parent) + down);
+      this.heights.set(parent, Math.max(this.heights.get(parent), down));
+    }
+    return stats;
+  }
+
+  //EFFECT: closes the stores of the last size analyzed, which the next analysis makes again
+  public void close() {
+    this.queue.close();
+    if (this.parents != null) {
+      this.parents.close();
+      this.heights.close();
+    }
+    this.queue = new HeapIntStore(new int[0]);
+  }
+
+  //EFFECT: counts the straight lines of open passages the given cell starts, one going right
+  // when its left side is closed and one going down when its upper side is, so every line is
+  // walked once from its first cell
+  void countStraights(Grid grid, int cell, int sides, MazeStats stats) {
+    if ((sides & (1 << Grid.LEFT)) == 0) {
+      int length = 1;
+      for (int at = cell; grid.canMove(at, Grid.RIGHT); at += 1) {
+        length += 1;
+      }
+      stats.countStraight(length);
+    }
+    if ((sides & (1 << Grid.UP)) == 0) {
+      int length = 1;
+      for (int at = cell; grid.canMove(at, Grid.DOWN); at += grid.width) {
+        length += 1;
+      }
+      stats.countStraight(length);
+    }
+  }
+}
@@ -0,0 +1,458 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// where a grid and the algorithms run over it keep their per-cell arrays: on the Java heap for
+// mazes that fit it, or off it in memory-mapped files for mazes that do not, paged in and out
+// by the OS instead of held by the garbage collector
+// whoever makes a store closes it once done with it, which gives a mapped store's pages and
+// disk space back at once; a store must not be used after it is closed
+interface IStorage {
+  // a new store of the given number of bytes, ints or longs, all 0
+  ByteStore bytes(long length);
+
+  IntStore ints(long length);
+
+  LongStore longs(long length);
+}
+
+// a fixed number of bytes indexed by long, wherever they are kept
+abstract class ByteStore implements AutoCloseable {
+  abstract long length();
+
+  abstract byte get(long i);
+
+  //EFFECT: sets the byte at the given index
+  abstract void set(long i, byte value);
+
+  //EFFECT: sets every byte to the given value
+  void fill(byte value) {
+    for (long i = 0; i < this.length(); i += 1) {
+      this.set(i, value);
+    }
+  }
+
+  //EFFECT: lets go of the bytes, an array on the heap is left to the garbage collector
+  public void close() {
+    // nothing to give back early
+  }
+}
+
+// a fixed number of ints indexed by long, wherever they are kept
+abstract class IntStore implements AutoCloseable {
+  abstract long length();
+
+  abstract int get(long i);
+
+  //EFFECT: sets the int at the given index
+  abstract void set(long i, int value);
+
+  //EFFECT: sets every int to the given value
+  void fill(int value) {
+    for (long i = 0; i < this.length(); i += 1) {
+      this.set(i, value);
+    }
+  }
+
+  //EFFECT: lets go of the ints, an array on the heap is left to the garbage collector
+  public void close() {
+    // nothing to give back early
+  }
+
+  // the first given number of ints, in an array of their own on the heap
+  int[] toArray(int count) {
+    int[] array = new int[count];
+    for (int i = 0; i < count; i += 1) {
+      array[i] = this.get(i);
+    }
+    return array;
+  }
+}
+
+// a fixed number of longs indexed by long, wherever they are kept
+abstract class LongStore implements AutoCloseable {
+  abstract long length();
+
+  abstract long get(long i);
+
+  //EFFECT: sets the long at the given index
+  abstract void set(long i, long value);
+
+  //EFFECT: sets every long to the given value
+  void fill(long value) {
+    for (long i = 0; i < this.length(); i += 1) {
+      this.set(i, value);
+    }
+  }
+
+  // whether the given bit is set, bit i being bit i % 64 of long i / 64
+  boolean bit(long i) {
+    return (this.get(i >>> 6) & (1L << i)) != 0;
+  }
+
+  //EFFECT: sets the given bit
+  void setBit(long i) {
+    long word = i >>> 6;
+    this.set(word, this.get(word) | (1L << i));
+  }
+
+  //EFFECT: lets go of the longs, an array on the heap is left to the garbage collector
+  public void close() {
+    // nothing to give back early
+  }
+
+  //EFFECT: copies longs from the given index onwards into the given buffer until it is full
+  void get(long from, LongBuffer into) {
+    while (into.hasRemaining()) {
+      into.put(this.get(from));
+      from += 1;
+    }
+  }
+
+  //EFFECT: copies the rest of the given buffer into the longs from the given index onwards
+  void set(long from, LongBuffer bits) {
+    while (bits.hasRemaining()) {
+      this.set(from, bits.get());
+      from += 1;
+    }
+  }
+}
+
+// keeps every store in an array on the heap, as fast as the arrays themselves once inlined
+class HeapStorage implements IStorage {
+  public ByteStore bytes(long length) {
+    return new HeapByteStore(new byte[HeapStorage.arrayLength(length)]);
+  }
+
+  public IntStore ints(long length) {
+    return new HeapIntStore(new int[HeapStorage.arrayLength(length)]);
+  }
+
+  public LongStore longs(long length) {
+    return new HeapLongStore(new long[HeapStorage.arrayLength(length)]);
+  }
+
+  // the given length, if an array can have it
+  static int arrayLength(long length) {
+    if (length > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(length + " elements do not fit in one array, "
+          + "keep the maze in a MappedStorage instead");
+    }
+    return (int) length;
+  }
+}
+
+class HeapByteStore extends ByteStore {
+  final byte[] bytes;
+
+  HeapByteStore(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  long length() {
+    return this.bytes.length;
+  }
+
+  byte get(long i) {
+    return this.bytes[(int) i];
+  }
+
+  void set(long i, byte value) {
+    this.bytes[(int) i] = value;
+  }
+
+  void fill(byte value) {
+    Arrays.fill(this.bytes, value);
+  }
+}
+
+class HeapIntStore extends IntStore {
+  final int[] ints;
+
+  HeapIntStore(int[] ints) {
+    this.ints = ints;
+  }
+
+  long length() {
+    return this.ints.length;
+  }
+
+  int get(long i) {
+    return this.ints[(int) i];
+  }
+
+  void set(long i, int value) {
+    this.ints[(int) i] = value;
+  }
+
+  void fill(int value) {
+    Arrays.fill(this.ints, value);
+  }
+
+  int[] toArray(int count) {
+    return Arrays.copyOf(this.ints, count);
+  }
+}
+
+class HeapLongStore extends LongStore {
+  final long[] longs;
+
+  HeapLongStore(long[] longs) {
+    this.longs = longs;
+  }
+
+  long length() {
+    return this.longs.length;
+  }
+
+  long get(long i) {
+    return this.longs[(int) i];
+  }
+
+  void set(long i, long value) {
+    this.longs[(int) i] = value;
+  }
+
+  void fill(long value) {
+    Arrays.fill(this.longs, value);
+  }
+
+  void get(long from, LongBuffer into) {
+    into.put(this.longs, (int) from, into.remaining());
+  }
+
+  void set(long from, LongBuffer bits) {
+    bits.get(this.longs, (int) from, bits.remaining());
+  }
+}
+
+// keeps every store in a file of its own in the given directory, mapped into memory a segment
+// at a time, since one buffer reaches at most 2 GB; the file is deleted as soon as it is mapped,
+// so its pages live exactly as long as the mapping, which closing the store unmaps
+class MappedStorage implements IStorage {
+  // 1 GB segments, like the regions MazeFile maps
+  static final int SEGMENT_SHIFT = 30;
+  // sun.misc.Unsafe and its invokeCleaner, which unmaps a buffer there and then, looked up by
+  // reflection so the game still builds without them; where they are missing a closed store's
+  // mapping goes whenever the garbage collector collects its buffers
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    }
+    catch (ReflectiveOperationException | RuntimeException e) {
+      unsafe = null;
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  final Path directory;
+  // bytes in each mapped segment, 1 << segmentShift, a whole number of longs so no value
+  // straddles two
+  final int segmentShift;
+
+  MappedStorage(Path directory) {
+    this(directory, SEGMENT_SHIFT);
+  }
+
+  //for testing, with segments small enough to cross
+  MappedStorage(Path directory, int segmentShift) {
+    if (segmentShift < 3 || segmentShift > SEGMENT_SHIFT) {
+      throw new IllegalArgumentException("Bad segment shift " + segmentShift);
+    }
+    this.directory = directory;
+    this.segmentShift = segmentShift;
+  }
+
+  public ByteStore bytes(long length) {
+    return new MappedByteStore(this.map(length), this.segmentShift, length);
+  }
+
+  public IntStore ints(long length) {
+    return new MappedIntStore(this.map(length * Integer.BYTES), this.segmentShift, length);
+  }
+
+  public LongStore longs(long length) {
+    return new MappedLongStore(this.map(length * Long.BYTES), this.segmentShift, length);
+  }
+
+  // the segments of a new file of the given number of bytes, all 0
+  MappedByteBuffer[] map(long bytes) {
+    try {
+      Path file = Files.createTempFile(this.directory, "maze", ".cells");
+      long segmentBytes = 1L << this.segmentShift;
+      MappedByteBuffer[] segments =
+          new MappedByteBuffer[(int) ((bytes + segmentBytes - 1) >>> this.segmentShift)];
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        for (int i = 0; i < segments.length; i += 1) {
+          long start = i * segmentBytes;
+          segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+              Math.min(segmentBytes, bytes - start));
+          segments[i].order(ByteOrder.nativeOrder());
+        }
+      }
+      // the mapping keeps the pages, on systems that refuse to delete a mapped file it goes
+      // once the JVM exits
+      try {
+        Files.delete(file);
+      }
+      catch (IOException e) {
+        file.toFile().deleteOnExit();
+      }
+      return segments;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // returns true if closing a store unmaps it at once, not whenever its buffers are collected
+  static boolean unmapsAtOnce() {
+    return INVOKE_CLEANER != null;
+  }
+
+  //EFFECT: unmaps the given segments, which nothing may touch again
+  static void unmap(MappedByteBuffer[] segments) {
+    if (INVOKE_CLEANER == null) {
+      return;
+    }
+    try {
+      for (MappedByteBuffer segment : segments) {
+        INVOKE_CLEANER.invoke(UNSAFE, segment);
+      }
+    }
+    catch (ReflectiveOperationException e) {
+      // left to the garbage collector, as where the method is missing
+    }
+  }
+}
+
+class MappedByteStore extends ByteStore {
+  // none once closed
+  private MappedByteBuffer[] segments;
+  private final int shift;
+  // picks the offset of a byte in its segment out of its index
+  private final long mask;
+  private final long length;
+
+  MappedByteStore(MappedByteBuffer[] segments, int shift, long length) {
+    this.segments = segments;
+    this.shift = shift;
+    this.mask = (1L << shift) - 1;
+    this.length = length;
+  }
+
+  //EFFECT: unmaps every segment, so the pages and disk space go now
+  public void close() {
+    MappedByteBuffer[] mapped = this.segments;
+    this.segments = new MappedByteBuffer[0];
+    MappedStorage.unmap(mapped);
+  }
+
+  long length() {
+    return this.length;
+  }
+
+  byte get(long i) {
+    return this.segments[(int) (i >>> this.shift)].get((int) (i & this.mask));
+  }
+
+  void set(long i, byte value) {
+    this.segments[(int) (i >>> this.shift)].put((int) (i & this.mask), value);
+  }
+}
+
+class MappedIntStore extends IntStore {
+  // none once closed
+  private MappedByteBuffer[] segments;
+  private final int shift;
+  // picks the offset of a byte in its segment out of its index
+  private final long mask;
+  private final long length;
+
+  MappedIntStore(MappedByteBuffer[] segments, int shift, long length) {
+    this.segments = segments;
+    this.shift = shift;
+    this.mask = (1L << shift) - 1;
+    this.length = length;
+  }
+
+  //EFFECT: unmaps every segment, so the pages and disk space go now
+  public void close() {
+    MappedByteBuffer[] mapped = this.segments;
+    this.segments = new MappedByteBuffer[0];
+    MappedStorage.unmap(mapped);
+  }
+
+  long length() {
+    return this.length;
+  }
+
+  int get(long i) {
+    long at = i * Integer.BYTES;
+    return this.segments[(int) (at >>> this.shift)].getInt((int) (at & this.mask));
+  }
+
+  void set(long i, int value) {
+    long at = i * Integer.BYTES;
+    this.segments[(int) (at >>> this.shift)].putInt((int) (at & this.mask), value);
+  }
+}
+
+class MappedLongStore extends LongStore {
+  // none once closed
+  private MappedByteBuffer[] segments;
+  private final int shift;
+  // picks the offset of a byte in its segment out of its index
+  private final long mask;
+  private final long length;
+
+  MappedLongStore(MappedByteBuffer[] segments, int shift, long length) {
+    this.segments = segments;
+    this.shift = shift;
+    this.mask = (1L << shift) - 1;
+    this.length = length;
+  }
+
+  //EFFECT: unmaps every segment, so the pages and disk space go now
+  public void close() {
+    MappedByteBuffer[] mapped = this.segments;
+    this.segments = new MappedByteBuffer[0];
+    MappedStorage.unmap(mapped);
+  }
+
+  long length() {
+    return this.length;
+  }
+
+  long get(long i) {
+    long at = i * Long.BYTES;
+    return this.segments[(int) (at >>> this.shift)].getLong((int) (at & this.mask));
+  }
+
+  void set(long i, long value) {
+    long at = i * Long.BYTES;
+    this.segments[(int) (at >>> this.shift)].putLong((int) (at & this.mask), value);
+  }
+}
@@ -0,0 +1,490 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// a growing list of cells, such as the order a search explored them in or the cells a player
+// walked, kept as the step from each cell to the next in half a byte where it can be:
+//   0-3   to the neighbor UP, LEFT, DOWN or RIGHT, in the grid's direction order
+//   4-7   to the neighbor up and left, up and right, down and left, or down and right
+//   8-11  two cells UP, LEFT, DOWN or RIGHT
+//   12    the same cell again
+//   13    a step of less than 128 either way, then its zigzag difference in 2 nibbles
+//   14    a step of less than 2048 either way, then its zigzag difference in 3 nibbles
+//   15    any other step, then its zigzag difference 3 bits a nibble, low bits first, the high
+//         bit of each nibble set while more follow
+// (zigzag moves the sign to the low bit, so small steps back are small numbers too)
+// every KEYFRAME_STEPS-th cell is kept whole instead, with where the step after it starts, so
+// any step can be read after decoding at most KEYFRAME_STEPS - 1 others
+class CellTrace {
+  static final int KEYFRAME_STEPS = 4096;
+  static final int SAME = 12;
+  static final int SHORT = 13;
+  static final int MEDIUM = 14;
+  static final int ESCAPE = 15;
+  // the codes of the differences -2 to 2, of -width - 1 to -width + 1, and of width - 1 to
+  // width + 1
+  static final int[] NEAR_CODES = {9, 1, SAME, 3, 11};
+  static final int[] UP_CODES = {4, 0, 5};
+  static final int[] DOWN_CODES = {6, 2, 7};
+  // the most nibbles a trace can hold, two to each byte of an array
+  static final long MAX_NIBBLES = 2L * (Integer.MAX_VALUE - 8);
+
+  // the width of the grid the cells are in, which decides the steps a nibble stands for
+  final int width;
+  // the difference each code stands for, indexed by code
+  private final int[] deltas;
+  // two to a byte, the first in the low half
+  private byte[] nibbles;
+  private long nibbleCount;
+  private int size;
+  // the last cell added
+  private int last;
+  // the cell at each keyframe, and the nibble the step after it starts at
+  private int[] keyCells;
+  private long[] keyNibbles;
+
+  CellTrace(int width) {
+    this.width = width;
+    this.deltas = new int[] {-width, -1, width, 1, -width - 1, -width + 1, width - 1, width + 1,
+        -2 * width, -2, 2 * width, 2, 0};
+    this.nibbles = new byte[16];
+    this.keyCells = new int[1];
+    this.keyNibbles = new long[1];
+  }
+
+  // a trace of the given cells, in a grid of the given width
+  static CellTrace of(int[] cells, int width) {
+    CellTrace trace = new CellTrace(width);
+    for (int cell : cells) {
+      trace.add(cell);
+    }
+    return trace;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  // the number of bytes the steps take, not counting the keyframes
+  int stepBytes() {
+    return (int) ((this.nibbleCount + 1) >>> 1);
+  }
+
+  // the cell of the given step
+  int get(int i) {
+    if (i >= this.size) {
+      throw new IndexOutOfBoundsException("Step " + i + " of a trace of " + this.size);
+    }
+    return this.cursor(i).next();
+  }
+
+  // a cursor reading the cells from the given step on
+  TraceCursor cursor(int step) {
+    if (step < 0 || step > this.size) {
+      throw new IndexOutOfBoundsException("Step " + step + " of a trace of " + this.size);
+    }
+    TraceCursor cursor = new TraceCursor(this, step - step % KEYFRAME_STEPS);
+    while (cursor.step() < step) {
+      cursor.next();
+    }
+    return cursor;
+  }
+
+  //EFFECT: adds the given cell to the end
+  void add(int cell) {
+    if (this.size % KEYFRAME_STEPS == 0) {
+      int key = this.size / KEYFRAME_STEPS;
+      if (key == this.keyCells.length) {
+        this.keyCells = Arrays.copyOf(this.keyCells, key * 2);
+        this.keyNibbles = Arrays.copyOf(this.keyNibbles, key * 2);
+      }
+      this.keyCells[key] = cell;
+      this.keyNibbles[key] = this.nibbleCount;
+    }
+    else {
+      this.addStep(cell - this.last);
+    }
+    this.last = cell;
+    this.size += 1;
+  }
+
+  //EFFECT: adds the code of the given difference between cells, escaped when it has none
+  void addStep(int delta) {
+    int code = this.code(delta);
+    if (code >= 0) {
+      this.addNibbles(code, 1);
+      return;
+    }
+    int zigzag = (delta << 1) ^ (delta >> 31);
+    if ((zigzag & ~0xFF) == 0) {
+      this.addNibbles(SHORT | (zigzag << 4), 3);
+    }
+    else if ((zigzag & ~0xFFF) == 0) {
+      this.addNibbles(MEDIUM | (zigzag << 4), 4);
+    }
+    else {
+      long bits = ESCAPE;
+      int count = 1;
+      while ((zigzag & ~7) != 0) {
+        bits |= (long) (8 | (zigzag & 7)) << (count << 2);
+        count += 1;
+        zigzag >>>= 3;
+      }
+      this.addNibbles(bits | (long) zigzag << (count << 2), count + 1);
+    }
+  }
+
+  // the code of the given difference between cells, -1 when it has none; where the width
+  // makes two codes stand for the same difference, either reads back the same
+  int code(int delta) {
+    if (delta >= -2 && delta <= 2) {
+      return NEAR_CODES[delta + 2];
+    }
+    int up = delta + this.width;
+    if (up >= -1 && up <= 1) {
+      return UP_CODES[up + 1];
+    }
+    int down = delta - this.width;
+    if (down >= -1 && down <= 1) {
+      return DOWN_CODES[down + 1];
+    }
+    if (delta == -2 * this.width) {
+      return 8;
+    }
+    if (delta == 2 * this.width) {
+      return 10;
+    }
+    return -1;
+  }
+
+  //EFFECT: adds the given number of nibbles of the given bits, the low ones first, growing the
+  // bytes as needed
+  void addNibbles(long bits, int count) {
+    if (this.nibbleCount + count > MAX_NIBBLES) {
+      throw new IllegalStateException("A trace holds at most " + MAX_NIBBLES + " nibbles");
+    }
+    int last = (int) ((this.nibbleCount + count) >>> 1);
+    if (last >= this.nibbles.length) {
+      this.nibbles = Arrays.copyOf(this.nibbles,
+          (int) Math.min(MAX_NIBBLES / 2, Math.max(last + 1, this.nibbles.length * 2L)));
+    }
+    int i = (int) (this.nibbleCount >>> 1);
+    if ((this.nibbleCount & 1) != 0) {
+      this.nibbles[i] |= (byte) (bits << 4);
+      bits >>>= 4;
+      count -= 1;
+      i += 1;
+      this.nibbleCount += 1;
+    }
+    this.nibbleCount += count;
+    while (count > 0) {
+      this.nibbles[i] = (byte) bits;
+      bits >>>= 8;
+      count -= 2;
+      i += 1;
+    }
+  }
+
+  // the nibble at the given place, which must be before the end
+  int nibble(long at) {
+    if (at >= this.nibbleCount) {
+      throw new IllegalStateException("A trace ends after " + this.nibbleCount + " nibbles");
+    }
+    return (this.nibbles[(int) (at >>> 1)] >>> ((at & 1) << 2)) & 15;
+  }
+
+  // the difference the given code stands for, which must be one of 0 to SAME
+  int delta(int code) {
+    return this.deltas[code];
+  }
+
+  int keyCell(int key) {
+    return this.keyCells[key];
+  }
+
+  long keyNibble(int key) {
+    return this.keyNibbles[key];
+  }
+
+  //EFFECT: empties the trace
+  void clear() {
+    this.size = 0;
+    this.nibbleCount = 0;
+  }
+
+  // a trace of the same cells that stays the same while this one changes, holding no more
+  // bytes than its steps need
+  CellTrace copy() {
+    CellTrace copy = new CellTrace(this.width);
+    int keys = (this.size + KEYFRAME_STEPS - 1) / KEYFRAME_STEPS;
+    copy.nibbles = Arrays.copyOf(this.nibbles, this.stepBytes());
+    copy.nibbleCount = this.nibbleCount;
+    copy.size = this.size;
+    copy.last = this.last;
+    copy.keyCells = Arrays.copyOf(this.keyCells, Math.max(1, keys));
+    copy.keyNibbles = Arrays.copyOf(this.keyNibbles, Math.max(1, keys));
+    return copy;
+  }
+
+  // the cells in order, in an array of their own
+  int[] toArray() {
+    int[] cells = new int[this.size];
+    TraceCursor cursor = new TraceCursor(this, 0);
+    for (int i = 0; i < this.size; i += 1) {
+      cells[i] = cursor.next();
+    }
+    return cells;
+  }
+
+  // the number of bytes write takes
+  long fileBytes() {
+    int keys = (this.size + KEYFRAME_STEPS - 1) / KEYFRAME_STEPS;
+    return 4 * Integer.BYTES + Long.BYTES + (long) keys * (Integer.BYTES + Long.BYTES)
+        + this.stepBytes();
+  }
+
+  //EFFECT: writes the width, size, keyframe spacing, keyframes and steps to the given buffer
+  void write(ByteBuffer out) {
+    int keys = (this.size + KEYFRAME_STEPS - 1) / KEYFRAME_STEPS;
+    out.putInt(this.width);
+    out.putInt(this.size);
+    out.putInt(KEYFRAME_STEPS);
+    out.putInt(keys);
+    out.putLong(this.nibbleCount);
+    for (int key = 0; key < keys; key += 1) {
+      out.putInt(this.keyCells[key]);
+      out.putLong(this.keyNibbles[key]);
+    }
+    out.put(this.nibbles, 0, this.stepBytes());
+  }
+
+  // returns the trace written to the given buffer, reading every step to check that it is
+  // whole and that its cells are all among the given number
+  static CellTrace read(ByteBuffer in, int cells) throws IOException {
+    if (in.remaining() < 4 * Integer.BYTES + Long.BYTES) {
+      throw new IOException("Truncated trace");
+    }
+    int width = in.getInt();
+    int size = in.getInt();
+    int spacing = in.getInt();
+    int keys = in.getInt();
+    long nibbleCount = in.getLong();
+    if (width <= 0 || size < 0 || spacing != KEYFRAME_STEPS
+        || keys != (size + KEYFRAME_STEPS - 1) / KEYFRAME_STEPS || nibbleCount < 0
+        || nibbleCount > MAX_NIBBLES
+        || in.remaining() < (long) keys * (Integer.BYTES + Long.BYTES) + (nibbleCount + 1) / 2) {
+      throw new IOException("Bad trace of " + size + " steps");
+    }
+    CellTrace trace = new CellTrace(width);
+    trace.keyCells = new int[Math.max(1, keys)];
+    trace.keyNibbles = new long[Math.max(1, keys)];
+    for (int key = 0; key < keys; key += 1) {
+      trace.keyCells[key] = in.getInt();
+      trace.keyNibbles[key] = in.getLong();
+    }
+    trace.nibbles = new byte[(int) ((nibbleCount + 1) / 2)];
+    in.get(trace.nibbles);
+    trace.nibbleCount = nibbleCount;
+    trace.size = size;
+    try {
+      TraceCursor cursor = new TraceCursor(trace, 0);
+      for (int i = 0; i < size; i += 1) {
+        if (i % KEYFRAME_STEPS == 0
+            && cursor.nibbleAt() != trace.keyNibbles[i / KEYFRAME_STEPS]) {
+          throw new IllegalStateException("A keyframe is not where its steps end");
+        }
+        trace.last = cursor.next();
+        if (trace.last < 0 || trace.last >= cells) {
+          throw new IllegalStateException("Step " + i + " is outside the maze");
+        }
+      }
+      if (cursor.nibbleAt() != nibbleCount) {
+        throw new IllegalStateException("Steps left over after the last");
+      }
+    }
+    catch (IllegalStateException e) {
+      throw new IOException("Bad trace: " + e.getMessage(), e);
+    }
+    return trace;
+  }
+}
+
+// reads the cells of a trace in order, from a keyframe or any step after one
+class TraceCursor {
+  final CellTrace trace;
+  private int step;
+  // where the next step's code starts
+  private long nibble;
+  private int cell;
+
+  // a cursor at the given step, which must be a keyframe
+  TraceCursor(CellTrace trace, int step) {
+    this.trace = trace;
+    this.step = step;
+  }
+
+  // the step next returns
+  int step() {
+    return this.step;
+  }
+
+  // the nibble the next step's code starts at, when it is not a keyframe
+  long nibbleAt() {
+    return this.nibble;
+  }
+
+  // returns the given number of nibbles read as one number, the low ones first
+  //EFFECT: moves past them
+  int nibbles(int count) {
+    int bits = 0;
+    for (int i = 0; i < count; i += 1) {
+      bits |= this.trace.nibble(this.nibble) << (i << 2);
+      this.nibble += 1;
+    }
+    return bits;
+  }
+
+  boolean hasNext() {
+    return this.step < this.trace.size();
+  }
+
+  // returns the cell of the next step
+  //EFFECT: moves on to the step after it
+  int next() {
+    if (this.step % CellTrace.KEYFRAME_STEPS == 0) {
+      int key = this.step / CellTrace.KEYFRAME_STEPS;
+      this.cell = this.trace.keyCell(key);
+      this.nibble = this.trace.keyNibble(key);
+    }
+    else {
+      int code = this.trace.nibble(this.nibble);
+      this.nibble += 1;
+      if (code <= CellTrace.SAME) {
+        this.cell += this.trace.delta(code);
+      }
+      else {
+        int zigzag;
+        if (code == CellTrace.SHORT) {
+          zigzag = this.nibbles(2);
+        }
+        else if (code == CellTrace.MEDIUM) {
+          zigzag = this.nibbles(3);
+        }
+        else {
+          zigzag = 0;
+          int shift = 0;
+          int part = this.nibbles(1);
+          while ((part & 8) != 0) {
+            zigzag |= (part & 7) << shift;
+            shift += 3;
+            part = this.nibbles(1);
+          }
+          zigzag |= part << shift;
+        }
+        this.cell += (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    this.step += 1;
+    return this.cell;
+  }
+}
+
+// a search or a player's run through one maze, saved to replay without searching again:
+// a little-endian header of magic, version, width, height and seed, the name shown while it
+// plays, then the cells explored and the path, each a CellTrace
+class TraceRecording {
+  // "MZTR" in ASCII
+  static final int MAGIC = 0x4D5A5452;
+  static final int VERSION = 1;
+
+  final String name;
+  final int width;
+  final int height;
+  final long seed;
+  final CellTrace seen;
+  final CellTrace path;
+
+  TraceRecording(String name, int width, int height, long seed, CellTrace seen,
+      CellTrace path) {
+    this.name = name;
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.seen = seen;
+    this.path = path;
+  }
+
+  // returns true if this was recorded in a maze of the given size and seed
+  boolean isOf(int width, int height, long seed) {
+    return this.width == width && this.height == height && this.seed == seed;
+  }
+
+  //EFFECT: writes this recording to the given file, replacing whatever was there
+  void save(Path file) throws IOException {
+    byte[] name = this.name.getBytes(StandardCharsets.UTF_8);
+    long bytes = 5 * Integer.BYTES + Long.BYTES + name.length + this.seen.fileBytes()
+        + this.path.fileBytes();
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IOException("A trace of " + bytes + " bytes is too long to save");
+    }
+    ByteBuffer out = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(MAGIC);
+    out.putInt(VERSION);
+    out.putInt(this.width);
+    out.putInt(this.height);
+    out.putLong(this.seed);
+    out.putInt(name.length);
+    out.put(name);
+    this.seen.write(out);
+    this.path.write(out);
+    out.flip();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+
+  // returns the recording saved in the given file
+  static TraceRecording load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Not a trace file: " + file);
+      }
+      ByteBuffer in = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+      while (in.hasRemaining() && channel.read(in) >= 0) {
+        // reads until full
+      }
+      in.flip();
+      if (in.remaining() < 5 * Integer.BYTES + Long.BYTES || in.getInt() != MAGIC) {
+        throw new IOException("Not a trace file: " + file);
+      }
+      int version = in.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported trace file version " + version + ": " + file);
+      }
+      int width = in.getInt();
+      int height = in.getInt();
+      long seed = in.getLong();
+      int nameLength = in.getInt();
+      if (width <= 0 || height <= 0 || (long) width * height > Grid.MAX_CELLS) {
+        throw new IOException("Bad maze size " + width + "x" + height + ": " + file);
+      }
+      if (nameLength < 0 || nameLength > in.remaining()) {
+        throw new IOException("Truncated trace file: " + file);
+      }
+      byte[] name = new byte[nameLength];
+      in.get(name);
+      CellTrace seen = CellTrace.read(in, width * height);
+      CellTrace path = CellTrace.read(in, width * height);
+      return new TraceRecording(new String(name, StandardCharsets.UTF_8), width, height, seed,
+          seen, path);
+    }
+  }
+}
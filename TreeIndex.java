@@ -0,0 +1,137 @@
+// answers path and distance queries between any two cells of a perfect maze, which is a tree,
+// without searching: every cell knows its parent toward the root, its depth, and one jump
+// pointer further up, placed so that any ancestor is O(log n) jumps away (skew-binary jump
+// pointers, which take three ints a cell instead of the log n a cell of a binary lifting table)
+class TreeIndex {
+  final Grid grid;
+  final int root;
+  // kept in the storage of the grid indexed
+  private final IntStore parents;
+  private final IntStore depths;
+  private final IntStore jumps;
+  // the depth of the cell farthest from the root
+  private final int deepest;
+
+  // indexes the tree of open passages of the given grid from the given root, in one
+  // breadth-first pass; cells the root cannot reach are left out, with depth -1
+  TreeIndex(Grid grid, int root) {
+    this.grid = grid;
+    this.root = root;
+    this.parents = grid.storage().ints(grid.cells());
+    this.depths = grid.storage().ints(grid.cells());
+    this.jumps = grid.storage().ints(grid.cells());
+    this.depths.fill(-1);
+    // every cell is queued at most once, and only after its parent has its jump; the queue is
+    // only needed while indexing
+    try (IntStore queue = grid.storage().ints(grid.cells())) {
+      int head = 0;
+      int tail = 1;
+      queue.set(0, root);
+      this.parents.set(root, root);
+      this.jumps.set(root, root);
+      this.depths.set(root, 0);
+      while (head != tail) {
+        int next = queue.get(head);
+        head += 1;
+        for (int dir = Grid.UP; dir <= Grid.RIGHT; dir += 1) {
+          if (grid.canMove(next, dir)) {
+            int child = grid.neighbor(next, dir);
+            if (this.depths.get(child) == -1) {
+              this.depths.set(child, this.depths.get(next) + 1);
+              this.parents.set(child, next);
+              this.jumps.set(child, this.jumpFrom(next));
+              queue.set(tail, child);
+              tail += 1;
+            }
+          }
+        }
+      }
+      // breadth-first, the last cell queued is the deepest
+      this.deepest = this.depths.get(queue.get(tail - 1));
+    }
+  }
+
+  // the jump pointer of a child of the given cell: as far as the cell's own jump twice over
+  // when its last two jumps were the same length, otherwise just the cell
+  int jumpFrom(int parent) {
+    int jump = this.jumps.get(parent);
+    int jumpTwice = this.jumps.get(jump);
+    int depth = this.depths.get(jump);
+    if (this.depths.get(parent) - depth == depth - this.depths.get(jumpTwice)) {
+      return jumpTwice;
+    }
+    else {
+      return parent;
+    }
+  }
+
+  // the number of steps from the root to the given cell, -1 if the root cannot reach it
+  int depth(int cell) {
+    return this.depths.get(cell);
+  }
+
+  int deepest() {
+    return this.deepest;
+  }
+
+  // the next cell from the given one toward the root, the root itself for the root
+  int parent(int cell) {
+    return this.parents.get(cell);
+  }
+
+  // the ancestor of the given cell at the given depth, no deeper than the cell
+  int ancestor(int cell, int depth) {
+    while (this.depths.get(cell) > depth) {
+      if (this.depths.get(this.jumps.get(cell)) >= depth) {
+        cell = this.jumps.get(cell);
+      }
+      else {
+        cell = this.parents.get(cell);
+      }
+    }
+    return cell;
+  }
+
+  // the deepest cell both given cells pass through on their way to the root
+  int meet(int first, int second) {
+    int depth = Math.min(this.depths.get(first), this.depths.get(second));
+    first = this.ancestor(first, depth);
+    second = this.ancestor(second, depth);
+    // cells of the same depth have jumps of the same depth, so both climb in step
+    while (first != second) {
+      if (this.jumps.get(first) != this.jumps.get(second)) {
+        first = this.jumps.get(first);
+        second = this.jumps.get(second);
+      }
+      else {
+        first = this.parents.get(first);
+        second = this.parents.get(second);
+      }
+    }
+    return first;
+  }
+
+  // the number of steps along the maze between the two given cells
+  int distance(int first, int second) {
+    return this.depths.get(first) + this.depths.get(second)
+        - 2 * this.depths.get(this.meet(first, second));
+  }
+
+  // the cells along the maze from the first given cell to the second, both included
+  int[] path(int from, int to) {
+    int meet = this.meet(from, to);
+    int up = this.depths.get(from) - this.depths.get(meet);
+    int[] path = new int[up + this.depths.get(to) - this.depths.get(meet) + 1];
+    int cell = from;
+    for (int i = 0; i <= up; i += 1) {
+      path[i] = cell;
+      cell = this.parents.get(cell);
+    }
+    cell = to;
+    for (int i = path.length - 1; i > up; i -= 1) {
+      path[i] = cell;
+      cell = this.parents.get(cell);
+    }
+    return path;
+  }
+}
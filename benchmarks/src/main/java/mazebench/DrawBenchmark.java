@@ -0,0 +1,55 @@
+package mazebench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// drawing frames with Maze.draw, both a full repaint and a frame where one cell changed
+// sizes stop at 250, past that the 16 pixel per cell image no longer fits a normal heap
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DrawBenchmark {
+  @Param({"10", "100", "250"})
+  public int size;
+
+  private Object grid;
+  private Object maze;
+  private int tick;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.grid = Game.seededGrid(this.size, this.size, 42);
+    this.maze = (Object) Game.NEW_MAZE_OF_GRID.invokeExact(this.grid);
+    Object first = (Object) Game.DRAW.invokeExact(this.maze);
+  }
+
+  // the frame after a new maze or a cleared maze, every cell painted
+  @Benchmark
+  public Object fullFrame() throws Throwable {
+    Game.MARK_ALL_DIRTY.invokeExact(this.grid);
+    return (Object) Game.DRAW.invokeExact(this.maze);
+  }
+
+  // a frame of an animation, one cell changed color since the last
+  @Benchmark
+  public Object changedFrame() throws Throwable {
+    this.tick += 1;
+    Game.PAINT.invokeExact(this.grid, this.size + 1, (byte) (this.tick & 1));
+    return (Object) Game.DRAW.invokeExact(this.maze);
+  }
+}
@@ -0,0 +1,119 @@
+package mazebench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+// The game lives in the default package, which code in a named package cannot refer to, and
+// JMH will not generate benchmarks in the default package. So the benchmarks reach the game
+// through these method handles, looked up once with every game type erased to Object. Being
+// static finals, the JIT folds them into direct calls.
+final class Game {
+  // Maze(int width, int height)
+  static final MethodHandle NEW_MAZE = constructor("Maze", int.class, int.class);
+  // Maze(Grid grid), keeping the grid's weights
+  static final MethodHandle NEW_MAZE_OF_GRID = constructor("Maze", type("Grid"));
+  // Grid(int width, int height)
+  static final MethodHandle NEW_GRID = constructor("Grid", int.class, int.class);
+  // new BreadthFirstSearch(), new DepthFirstSearch()
+  static final MethodHandle NEW_BREADTH_FIRST = constructor("BreadthFirstSearch");
+  static final MethodHandle NEW_DEPTH_FIRST = constructor("DepthFirstSearch");
+  // DeadEndFillSearch(boolean trace)
+  static final MethodHandle NEW_DEAD_END_FILL = constructor("DeadEndFillSearch", boolean.class);
+  // EllerGenerator(int width, int height, boolean horizPref, boolean vertPref), new RowStats()
+  static final MethodHandle NEW_ELLER = constructor("EllerGenerator", int.class, int.class,
+      boolean.class, boolean.class);
+  static final MethodHandle NEW_ROW_STATS = constructor("RowStats");
+  // ParallelSpanningTree(Grid grid, long salt)
+  static final MethodHandle NEW_PARALLEL_SPANNING_TREE =
+      constructor("ParallelSpanningTree", type("Grid"), long.class);
+  // new MazeAnalyzer()
+  static final MethodHandle NEW_MAZE_ANALYZER = constructor("MazeAnalyzer");
+  // NodeUnionFind(int cells)
+  static final MethodHandle NEW_UNION_FIND = constructor("NodeUnionFind", int.class);
+
+  static final MethodHandle CHEAPEST_SPANNING_PATH =
+      method("Maze", "cheapestSpanningPath", void.class);
+  static final MethodHandle PATH_FROM_TO =
+      method("Maze", "pathFromTo", void.class, int.class, int.class, type("ISearch"));
+  static final MethodHandle SEARCH = method("ISearch", "search", type("SearchResult"),
+      type("Grid"), int.class, int.class);
+  static final MethodHandle GET_PATH = method("Maze", "getPath", int[].class);
+  static final MethodHandle PATH_BETWEEN =
+      method("Maze", "pathBetween", int[].class, int.class, int.class);
+  static final MethodHandle DISTANCE_BETWEEN =
+      method("Maze", "distanceBetween", int.class, int.class, int.class);
+  static final MethodHandle DRAW = method("Maze", "draw", type("javalib.worldimages.WorldImage"));
+
+  static final MethodHandle ELLER_GENERATE = method("EllerGenerator", "generate", void.class,
+      SplittableRandom.class, type("IRowConsumer"));
+
+  static final MethodHandle PARALLEL_GENERATE = method("ParallelSpanningTree", "generate",
+      void.class, ForkJoinPool.class);
+
+  static final MethodHandle ANALYZE = method("MazeAnalyzer", "analyze", type("MazeStats"),
+      type("Grid"), int.class, int.class);
+
+  static final MethodHandle RANDOMIZE_WEIGHTS = method("Grid", "randomizeWeights", void.class,
+      SplittableRandom.class, boolean.class, boolean.class);
+  static final MethodHandle CAN_MOVE =
+      method("Grid", "canMove", boolean.class, int.class, int.class);
+  static final MethodHandle PAINT = method("Grid", "paint", void.class, int.class, byte.class);
+  static final MethodHandle MARK_ALL_DIRTY = method("Grid", "markAllDirty", void.class);
+
+  static final MethodHandle UNION =
+      method("NodeUnionFind", "union", boolean.class, int.class, int.class);
+  static final MethodHandle FIND = method("NodeUnionFind", "find", int.class, int.class);
+
+  private Game() {
+  }
+
+  // a new width x height grid, its weights randomized by the given seed and its passages
+  // generated from them, so every benchmark of one size runs on the same maze
+  static Object seededGrid(int width, int height, long seed) throws Throwable {
+    Object grid = (Object) NEW_GRID.invokeExact(width, height);
+    RANDOMIZE_WEIGHTS.invokeExact(grid, (Object) new SplittableRandom(seed), false, false);
+    Object maze = (Object) NEW_MAZE_OF_GRID.invokeExact(grid);
+    return grid;
+  }
+
+  static Class<?> type(String name) {
+    try {
+      return Class.forName(name);
+    }
+    catch (ClassNotFoundException e) {
+      throw new IllegalStateException("The game classes are not on the classpath", e);
+    }
+  }
+
+  static MethodHandles.Lookup lookupIn(Class<?> gameClass) throws IllegalAccessException {
+    return MethodHandles.privateLookupIn(gameClass, MethodHandles.lookup());
+  }
+
+  static MethodHandle constructor(String className, Class<?>... params) {
+    try {
+      Class<?> gameClass = type(className);
+      MethodHandle handle = lookupIn(gameClass)
+          .findConstructor(gameClass, MethodType.methodType(void.class, params));
+      return handle.asType(handle.type().erase());
+    }
+    catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("No constructor for " + className, e);
+    }
+  }
+
+  static MethodHandle method(String className, String name, Class<?> returns,
+      Class<?>... params) {
+    try {
+      Class<?> gameClass = type(className);
+      MethodHandle handle = lookupIn(gameClass)
+          .findVirtual(gameClass, name, MethodType.methodType(returns, params));
+      return handle.asType(handle.type().erase());
+    }
+    catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("No method " + className + "." + name, e);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package mazebench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// generating mazes: the whole constructor, Kruskal alone on an existing maze, and Eller's
+// algorithm streaming rows to a consumer that only counts them
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+  @Param({"10", "100", "500", "1000", "2000"})
+  public int size;
+
+  private Object maze;
+  private Object eller;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.maze = (Object) Game.NEW_MAZE.invokeExact(this.size, this.size);
+    this.eller = (Object) Game.NEW_ELLER.invokeExact(this.size, this.size, false, false);
+  }
+
+  // weights, Kruskal, and the first breadth-first solve
+  @Benchmark
+  public Object construct() throws Throwable {
+    return (Object) Game.NEW_MAZE.invokeExact(this.size, this.size);
+  }
+
+  @Benchmark
+  public void cheapestSpanningPath() throws Throwable {
+    Game.CHEAPEST_SPANNING_PATH.invokeExact(this.maze);
+  }
+
+  @Benchmark
+  public Object generateRows() throws Throwable {
+    Object stats = (Object) Game.NEW_ROW_STATS.invokeExact();
+    Game.ELLER_GENERATE.invokeExact(this.eller, (Object) new SplittableRandom(this.size), stats);
+    return stats;
+  }
+}
@@ -0,0 +1,58 @@
+package mazebench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// validating player moves, Grid.canMove in place of the old Node.isValidMove/validAdjacent
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoveBenchmark {
+  static final int MOVES = 1024;
+
+  @Param({"10", "100", "500", "1000", "2000"})
+  public int size;
+
+  private Object grid;
+  private final int[] cells = new int[MOVES];
+  private final int[] dirs = new int[MOVES];
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.grid = Game.seededGrid(this.size, this.size, 42);
+    Random rand = new Random(42);
+    for (int i = 0; i < MOVES; i += 1) {
+      this.cells[i] = rand.nextInt(this.size * this.size);
+      this.dirs[i] = rand.nextInt(4);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MOVES)
+  public int canMove() throws Throwable {
+    int valid = 0;
+    for (int i = 0; i < MOVES; i += 1) {
+      if ((boolean) Game.CAN_MOVE.invokeExact(this.grid, this.cells[i], this.dirs[i])) {
+        valid += 1;
+      }
+    }
+    return valid;
+  }
+}
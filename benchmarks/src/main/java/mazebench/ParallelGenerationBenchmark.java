@@ -0,0 +1,63 @@
+package mazebench;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Boruvka's parallel spanning tree on pools of 1 to 32 threads, against Kruskal's on one,
+// over the same weights; the time per maze should fall close to 1 / threads up to the
+// number of cores. Needs a big heap at 4000, run with -jvmArgs -Xmx4g
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelGenerationBenchmark {
+  @Param({"4000"})
+  public int size;
+
+  @Param({"1", "2", "4", "8", "16", "32"})
+  public int threads;
+
+  private Object grid;
+  private Object maze;
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.grid = Game.seededGrid(this.size, this.size, 42);
+    this.maze = (Object) Game.NEW_MAZE_OF_GRID.invokeExact(this.grid);
+    this.pool = new ForkJoinPool(this.threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.pool.shutdown();
+  }
+
+  @Benchmark
+  public void parallelSpanningTree() throws Throwable {
+    Object tree = (Object) Game.NEW_PARALLEL_SPANNING_TREE.invokeExact(this.grid, 42L);
+    Game.PARALLEL_GENERATE.invokeExact(tree, (Object) this.pool);
+  }
+
+  // single threaded whatever the pool, the baseline to compare with
+  @Benchmark
+  public void cheapestSpanningPath() throws Throwable {
+    Game.CHEAPEST_SPANNING_PATH.invokeExact(this.maze);
+  }
+}
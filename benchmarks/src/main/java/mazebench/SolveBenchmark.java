@@ -0,0 +1,81 @@
+package mazebench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// solving one seeded maze per size from the top left to the bottom right, by searching or
+// through the maze's tree index, and the distance between two cells through the index; the
+// bare searches keep no animation, so breadth-first and dead-end filling compare as solvers
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+  @Param({"10", "100", "500", "1000", "2000"})
+  public int size;
+
+  private Object maze;
+  private Object breadthFirst;
+  private Object depthFirst;
+  private Object grid;
+  private Object deadEndFill;
+  private int middle;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.grid = Game.seededGrid(this.size, this.size, 42);
+    this.maze = (Object) Game.NEW_MAZE_OF_GRID.invokeExact(this.grid);
+    this.breadthFirst = (Object) Game.NEW_BREADTH_FIRST.invokeExact();
+    this.depthFirst = (Object) Game.NEW_DEPTH_FIRST.invokeExact();
+    this.deadEndFill = (Object) Game.NEW_DEAD_END_FILL.invokeExact(false);
+    this.middle = this.size / 2 * this.size + this.size / 2;
+  }
+
+  @Benchmark
+  public Object pathFromToBreadthFirst() throws Throwable {
+    Game.PATH_FROM_TO.invokeExact(this.maze, 0, this.size * this.size - 1, this.breadthFirst);
+    return (Object) Game.GET_PATH.invokeExact(this.maze);
+  }
+
+  @Benchmark
+  public Object pathFromToDepthFirst() throws Throwable {
+    Game.PATH_FROM_TO.invokeExact(this.maze, 0, this.size * this.size - 1, this.depthFirst);
+    return (Object) Game.GET_PATH.invokeExact(this.maze);
+  }
+
+  @Benchmark
+  public Object searchBreadthFirst() throws Throwable {
+    return (Object) Game.SEARCH.invokeExact(this.breadthFirst, this.grid, 0,
+        this.size * this.size - 1);
+  }
+
+  @Benchmark
+  public Object searchDeadEndFilling() throws Throwable {
+    return (Object) Game.SEARCH.invokeExact(this.deadEndFill, this.grid, 0,
+        this.size * this.size - 1);
+  }
+
+  @Benchmark
+  public Object pathBetween() throws Throwable {
+    return (Object) Game.PATH_BETWEEN.invokeExact(this.maze, 0, this.size * this.size - 1);
+  }
+
+  @Benchmark
+  public int distanceBetween() throws Throwable {
+    return (int) Game.DISTANCE_BETWEEN.invokeExact(this.maze, this.middle, this.size - 1);
+  }
+}
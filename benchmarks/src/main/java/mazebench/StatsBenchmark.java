@@ -0,0 +1,44 @@
+package mazebench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// working out the stats of one seeded maze per size, with one analyzer reused throughout the
+// way a batch of one size would; GenerationBenchmark.generateRows covers counting a stream
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsBenchmark {
+  @Param({"10", "100", "500", "1000", "2000"})
+  public int size;
+
+  private Object grid;
+  private Object analyzer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    this.grid = Game.seededGrid(this.size, this.size, 42);
+    this.analyzer = (Object) Game.NEW_MAZE_ANALYZER.invokeExact();
+  }
+
+  @Benchmark
+  public Object analyze() throws Throwable {
+    return (Object) Game.ANALYZE.invokeExact(this.analyzer, this.grid, 0,
+        this.size * this.size - 1);
+  }
+}
@@ -0,0 +1,88 @@
+package mazebench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// NodeUnionFind on its own: joining every cell of a grid, and finding in a joined one
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnionFindBenchmark {
+  @Param({"10", "100", "500", "1000", "2000"})
+  public int size;
+
+  // the cells on either side of every edge of the grid, in a random order
+  private int[] firsts;
+  private int[] seconds;
+  private Object joined;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    int edges = (this.size - 1) * this.size * 2;
+    this.firsts = new int[edges];
+    this.seconds = new int[edges];
+    int count = 0;
+    for (int y = 0; y < this.size; y += 1) {
+      for (int x = 0; x < this.size; x += 1) {
+        int cell = y * this.size + x;
+        if (x < this.size - 1) {
+          this.firsts[count] = cell;
+          this.seconds[count] = cell + 1;
+          count += 1;
+        }
+        if (y < this.size - 1) {
+          this.firsts[count] = cell;
+          this.seconds[count] = cell + this.size;
+          count += 1;
+        }
+      }
+    }
+    Random rand = new Random(42);
+    for (int i = edges - 1; i > 0; i -= 1) {
+      int j = rand.nextInt(i + 1);
+      int first = this.firsts[i];
+      int second = this.seconds[i];
+      this.firsts[i] = this.firsts[j];
+      this.seconds[i] = this.seconds[j];
+      this.firsts[j] = first;
+      this.seconds[j] = second;
+    }
+    this.joined = this.unionAll();
+  }
+
+  // every edge of the grid in random order, as Kruskal would try them
+  @Benchmark
+  public Object unionAll() throws Throwable {
+    Object nuf = (Object) Game.NEW_UNION_FIND.invokeExact(this.size * this.size);
+    for (int i = 0; i < this.firsts.length; i += 1) {
+      boolean merged = (boolean) Game.UNION.invokeExact(nuf, this.firsts[i], this.seconds[i]);
+    }
+    return nuf;
+  }
+
+  // a find from every cell of an already joined grid
+  @Benchmark
+  public int findAll() throws Throwable {
+    int sum = 0;
+    for (int cell = 0; cell < this.size * this.size; cell += 1) {
+      sum += (int) Game.FIND.invokeExact(this.joined, cell);
+    }
+    return sum;
+  }
+}